@@ -0,0 +1,269 @@
+package fr.uge.gitclout.api;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * This class follows one analysis run in the background: its phase, its progress, its timings and its result.
+ * A job follows the flight of the analysis it runs or joins, so that every job sharing an analysis reports its phase
+ * and its progress. Cancelling a job finishes it at once and detaches it from its flight, and the analysis itself only
+ * stops once every job sharing it is cancelled.
+ * @param <V> the type of the result of the analysis.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+final class AnalysisJob<V> {
+
+  /**
+   * The phases of a job, the last three being final.
+   * Only the cloning phase can be interrupted, the maintenance of the mirror and the analysis stop cooperatively.
+   */
+  enum Phase {
+    QUEUED, CLONING, MAINTAINING, ANALYZING, DONE, FAILED, CANCELLED;
+
+    boolean isFinal() {
+      return this == DONE || this == FAILED || this == CANCELLED;
+    }
+  }
+
+  private final String id;
+  private final String url;
+  private final Instant submittedAt = Instant.now();
+  private final CompletableFuture<V> result = new CompletableFuture<>();
+  private Phase phase = Phase.QUEUED;
+  private Instant startedAt;
+  private Instant finishedAt;
+  private int done;
+  private int total;
+  private String error;
+  private InFlightAnalyses.Flight<V> flight;
+
+  /**
+   * Constructs a new AnalysisJob, queued.
+   * @param id the id of the job.
+   * @param url the url of the analyzed repository.
+   */
+  AnalysisJob(String id, String url) {
+    this.id = Objects.requireNonNull(id);
+    this.url = Objects.requireNonNull(url);
+  }
+
+
+  String id() {
+    return id;
+  }
+
+
+  String url() {
+    return url;
+  }
+
+
+  Instant submittedAt() {
+    return submittedAt;
+  }
+
+
+  synchronized Phase phase() {
+    return phase;
+  }
+
+
+  synchronized Instant startedAt() {
+    return startedAt;
+  }
+
+
+  synchronized Instant finishedAt() {
+    return finishedAt;
+  }
+
+
+  synchronized String error() {
+    return error;
+  }
+
+
+  /**
+   * Returns the progress of the analysis.
+   * @return the percentage of the intervals analyzed, 100 once the job is done.
+   */
+  synchronized int percent() {
+    if (phase == Phase.DONE) {
+      return 100;
+    }
+    return total == 0 ? 0 : (int) (done * 100L / total);
+  }
+
+
+  /**
+   * Returns the time the job has been running, until now or until it finished.
+   * @return the running time, zero while the job is queued.
+   */
+  synchronized Duration elapsed() {
+    if (startedAt == null) {
+      return Duration.ZERO;
+    }
+    return Duration.between(startedAt, finishedAt == null ? Instant.now() : finishedAt);
+  }
+
+
+  /**
+   * Returns the result of the job if it is done.
+   * @return the result, or null if the job is not done or did not succeed.
+   */
+  V resultNow() {
+    return result.isDone() && !result.isCompletedExceptionally() ? result.join() : null;
+  }
+
+
+  /**
+   * Returns a future completed when the job finishes, whatever its outcome.
+   * @return the future of the result of the job.
+   */
+  CompletableFuture<V> completion() {
+    return result.copy();
+  }
+
+
+  /**
+   * Starts the job.
+   * @return false if the job was cancelled before it started.
+   */
+  synchronized boolean start() {
+    if (phase.isFinal()) {
+      return false;
+    }
+    startedAt = Instant.now();
+    return true;
+  }
+
+
+  /**
+   * Links the job to the flight of the analysis it runs or joins.
+   * @param flight the flight.
+   * @return false if the job is already finished.
+   */
+  synchronized boolean attach(InFlightAnalyses.Flight<V> flight) {
+    if (phase.isFinal()) {
+      return false;
+    }
+    this.flight = Objects.requireNonNull(flight);
+    return true;
+  }
+
+
+  /**
+   * Follows the phase and the progress of the flight the job is linked to.
+   * @param phase the phase of the analysis.
+   * @param done the number of intervals analyzed so far.
+   * @param total the number of intervals to analyze.
+   */
+  synchronized void follow(Phase phase, int done, int total) {
+    Objects.requireNonNull(phase);
+    if (this.phase.isFinal()) {
+      return;
+    }
+    this.phase = phase;
+    this.done = done;
+    this.total = total;
+  }
+
+
+  /**
+   * Cancels the job, which finishes at once. The analysis it runs or joins stops when no other job waits for it.
+   * @return false if the job was already finished.
+   */
+  boolean cancel() {
+    InFlightAnalyses.Flight<V> flight;
+    synchronized (this) {
+      if (phase.isFinal()) {
+        return false;
+      }
+      flight = this.flight;
+      finish(Phase.CANCELLED, "The job was cancelled");
+    }
+    result.cancel(false);
+    if (flight != null) {
+      flight.detach(this);
+    }
+    return true;
+  }
+
+
+  /**
+   * Finishes the job with the result of its analysis, unless it was cancelled meanwhile.
+   * @param value the result.
+   */
+  void succeed(V value) {
+    synchronized (this) {
+      if (phase.isFinal()) {
+        return;
+      }
+      finish(Phase.DONE, null);
+    }
+    result.complete(value);
+  }
+
+
+  /**
+   * Finishes the job with the failure of its analysis, unless it was cancelled meanwhile.
+   * @param failure the failure.
+   */
+  void fail(Throwable failure) {
+    Objects.requireNonNull(failure);
+    synchronized (this) {
+      if (phase.isFinal()) {
+        return;
+      }
+      finish(Phase.FAILED, Objects.requireNonNullElse(failure.getMessage(), failure.getClass().getName()));
+    }
+    result.completeExceptionally(failure);
+  }
+
+
+  private void finish(Phase phase, String error) {
+    this.phase = phase;
+    this.error = error;
+    finishedAt = Instant.now();
+    flight = null;
+  }
+
+
+  /**
+   * Waits for the result of the job.
+   * @return the result of the analysis.
+   * @throws IOException if the analysis failed with an IOException, was cancelled, or if the thread is interrupted.
+   * @throws GitAPIException if the analysis failed with a GitAPIException.
+   */
+  V await() throws IOException, GitAPIException {
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the job " + id);
+    } catch (CancellationException e) {
+      throw new InterruptedIOException("The job was cancelled");
+    } catch (ExecutionException e) {
+      var cause = e.getCause();
+      if (cause instanceof IOException ioException) {
+        throw ioException;
+      }
+      if (cause instanceof GitAPIException gitAPIException) {
+        throw gitAPIException;
+      }
+      if (cause instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new IOException("The job failed", cause);
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package fr.uge.gitclout.api;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class runs the analyses requested by the clients as background jobs, each on its own virtual thread,
+ * so that a request only enqueues its analysis and returns the id of its job at once.
+ * The jobs are kept after they finish so that their outcome can be read, then forgotten after the retention.
+ * @param <V> the type of the result of an analysis.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+class AnalysisJobs<V> implements AutoCloseable {
+
+  /**
+   * An analysis run by a job, which links the job to the flight of the analysis it runs or joins.
+   * @param <V> the type of its result.
+   */
+  @FunctionalInterface
+  interface Task<V> {
+    V run(AnalysisJob<V> job) throws IOException, GitAPIException;
+  }
+
+  private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
+  private final ConcurrentMap<String, AnalysisJob<V>> jobs = new ConcurrentHashMap<>();
+  private final Duration retention;
+
+  /**
+   * Constructs a new AnalysisJobs.
+   * @param retention the time a finished job is kept.
+   */
+  AnalysisJobs(Duration retention) {
+    Objects.requireNonNull(retention);
+    if (retention.isNegative()) {
+      throw new IllegalArgumentException("retention must be positive");
+    }
+    this.retention = retention;
+  }
+
+
+  /**
+   * Enqueues an analysis.
+   *
+   * @param url the url of the analyzed repository.
+   * @param task the analysis.
+   * @return the job of the analysis, queued or already started.
+   */
+  AnalysisJob<V> submit(String url, Task<V> task) {
+    Objects.requireNonNull(url);
+    Objects.requireNonNull(task);
+    forgetFinished();
+    var job = new AnalysisJob<V>(UUID.randomUUID().toString(), url);
+    jobs.put(job.id(), job);
+    executorService.execute(() -> run(job, task));
+    return job;
+  }
+
+
+  private void run(AnalysisJob<V> job, Task<V> task) {
+    if (!job.start()) {
+      return;
+    }
+    try {
+      job.succeed(task.run(job));
+    } catch (IOException | GitAPIException | RuntimeException | Error e) {
+      job.fail(e);
+    }
+  }
+
+
+  /**
+   * Looks a job up by its id.
+   * @param id the id of the job.
+   * @return the job, or null if it is unknown or was forgotten.
+   */
+  AnalysisJob<V> get(String id) {
+    return jobs.get(Objects.requireNonNull(id));
+  }
+
+
+  /**
+   * Returns the number of jobs not finished yet.
+   * @return the number of queued and running jobs.
+   */
+  int activeCount() {
+    return (int) jobs.values().stream().filter(job -> !job.phase().isFinal()).count();
+  }
+
+
+  private void forgetFinished() {
+    var limit = Instant.now().minus(retention);
+    jobs.values().removeIf(job -> {
+      var finishedAt = job.finishedAt();
+      return finishedAt != null && finishedAt.isBefore(limit);
+    });
+  }
+
+
+  /**
+   * Cancels the jobs not finished yet, which stop as they are cancelled, and accepts no more jobs.
+   */
+  @Override
+  public void close() {
+    for (var job : jobs.values()) {
+      job.cancel();
+    }
+    executorService.shutdown();
+  }
+}
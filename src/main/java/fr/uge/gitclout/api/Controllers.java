@@ -1,11 +1,18 @@
 package fr.uge.gitclout.api;
 
 import fr.uge.gitclout.database.Tag;
+import fr.uge.gitclout.dto.AnalysisJobDTO;
+import fr.uge.gitclout.dto.BlameCacheStatsDTO;
 import fr.uge.gitclout.dto.ContributionDTO;
+import fr.uge.gitclout.dto.PackCacheStatsDTO;
 import fr.uge.gitclout.dto.RepositoryDTO;
+import fr.uge.gitclout.dto.SchedulerStatsDTO;
+import fr.uge.gitclout.dto.StorageUsageDTO;
 import io.micronaut.http.HttpResponse;
 import io.micronaut.http.MediaType;
 import io.micronaut.http.annotation.*;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.annotation.ExecuteOn;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -31,17 +38,63 @@ public class Controllers {
   }
   
   /**
-   * Verifies a git link and returns a response.
+   * Verifies a git link and returns a response once its analysis is done.
+   * The request waits on a blocking thread, never on the event loop, so that the other endpoints stay responsive.
    * @param requestBody The git link to be verified.
    * @return HttpResponse with the processed repository.
    */
   @Operation(summary = "Verify a git link",
-          description = "Verifies a git link and returns a response.")
+          description = "Verifies a git link and returns a response. The optional fetchScope field (ALL, TAGS, or IN_PLACE for a repository already on the server disk) selects the refs that are cloned. The optional attributionMode field (BLAME, or DIFF for a faster attribution by commit) selects how the added lines are credited. The optional excludedPaths field lists globs of paths left out of the analysis, like vendor/** or **/*.min.js.")
   @ApiResponse(content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(type = "string")))
   @Post(uri = "/postLink", consumes = MediaType.APPLICATION_JSON, produces = MediaType.APPLICATION_JSON)
+  @ExecuteOn(TaskExecutors.BLOCKING)
   public HttpResponse<RepositoryDTO> processRepository(@Body String requestBody) throws GitAPIException, IOException {
     return gitService.processRepository(requestBody);
   }
+
+
+  /**
+   * Enqueues the analysis of a git link and returns its job at once.
+   * @param requestBody The git link to be analyzed, with the same fields as /postLink.
+   * @return HttpResponse accepted with the job of the analysis.
+   */
+  @Operation(summary = "Enqueue the analysis of a git link",
+          description = "Enqueues the analysis of a git link and returns its job at once, with its id. The body takes the same fields as /postLink. The job is then followed with /job/{id} and cancelled with /cancelJob/{id}.")
+  @ApiResponse(content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(type = "object", implementation = AnalysisJobDTO.class)))
+  @Post(uri = "/postJob", consumes = MediaType.APPLICATION_JSON, produces = MediaType.APPLICATION_JSON)
+  public HttpResponse<AnalysisJobDTO> submitRepository(@Body String requestBody) throws IOException {
+    return gitService.submitRepository(requestBody);
+  }
+
+
+  /**
+   * Retrieves the state of an analysis job.
+   *
+   * @param id The id of the job.
+   * @return Optional containing the job if it is known.
+   */
+  @Operation(summary = "Retrieve an analysis job",
+          description = "Retrieves the phase (QUEUED, CLONING, ANALYZING, DONE, FAILED or CANCELLED), the percentage of the analyzed tags, the timings and the outcome of an analysis job.")
+  @ApiResponse(content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(type = "object", implementation = AnalysisJobDTO.class)))
+  @Get("/job/{id}")
+  public Optional<AnalysisJobDTO> getJob(@PathVariable String id) {
+    return gitService.getJob(id);
+  }
+
+
+  /**
+   * Cancels an analysis job.
+   *
+   * @param id The id of the job.
+   * @return HttpResponse with the job, or not found.
+   */
+  @Operation(summary = "Cancel an analysis job",
+          description = "Cancels an analysis job, which stops before its next tag, file or commit. The repository of a cancelled first analysis is not kept.")
+  @ApiResponse(content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(type = "object", implementation = AnalysisJobDTO.class)))
+  @Post(uri = "/cancelJob/{id}", produces = MediaType.APPLICATION_JSON)
+  public HttpResponse<AnalysisJobDTO> cancelJob(@PathVariable String id) {
+    return gitService.cancelJob(id);
+  }
   
   
   /**
@@ -102,5 +155,60 @@ public class Controllers {
     Objects.requireNonNull(repository);
     return gitService.deleteRepository(repository);
   }
-}
 
+
+  /**
+   * Retrieves the disk usage of the cloned repositories.
+   *
+   * @return the usage of the mirror store.
+   */
+  @Operation(summary = "Retrieve the storage usage",
+          description = "Retrieves the disk usage, the budget and the eviction count of the cloned repositories.")
+  @ApiResponse(content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(type = "object", implementation = StorageUsageDTO.class)))
+  @Get("/storageUsage")
+  public StorageUsageDTO getStorageUsage() {
+    return gitService.getStorageUsage();
+  }
+
+
+  /**
+   * Retrieves the statistics of the JGit pack cache.
+   *
+   * @return the hit, miss and eviction counts of the pack cache.
+   */
+  @Operation(summary = "Retrieve the pack cache statistics",
+          description = "Retrieves the hit, miss and eviction counts of the JGit pack cache.")
+  @ApiResponse(content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(type = "object", implementation = PackCacheStatsDTO.class)))
+  @Get("/packCacheStats")
+  public PackCacheStatsDTO getPackCacheStats() {
+    return gitService.getPackCacheStats();
+  }
+
+
+  /**
+   * Retrieves the statistics of the blame caches of the analyses.
+   *
+   * @return the hit ratio, the entries and the bytes held by the blame caches.
+   */
+  @Operation(summary = "Retrieve the blame cache statistics",
+          description = "Retrieves the hit, miss and eviction counts of the blame caches since the start, and the entries and bytes held by the running analyses.")
+  @ApiResponse(content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(type = "object", implementation = BlameCacheStatsDTO.class)))
+  @Get("/blameCacheStats")
+  public BlameCacheStatsDTO getBlameCacheStats() {
+    return gitService.getBlameCacheStats();
+  }
+
+
+  /**
+   * Retrieves the gauges of the analysis scheduler.
+   *
+   * @return the queued, active and completed analysis tasks.
+   */
+  @Operation(summary = "Retrieve the analysis scheduler statistics",
+          description = "Retrieves the queue depth, the active and completed tasks and the concurrency limits of the analysis scheduler.")
+  @ApiResponse(content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(type = "object", implementation = SchedulerStatsDTO.class)))
+  @Get("/schedulerStats")
+  public SchedulerStatsDTO getSchedulerStats() {
+    return gitService.getSchedulerStats();
+  }
+}
@@ -6,24 +6,41 @@ import fr.uge.gitclout.database.Contribution;
 import fr.uge.gitclout.database.Contributor;
 import fr.uge.gitclout.database.Repository;
 import fr.uge.gitclout.database.Tag;
+import fr.uge.gitclout.dto.AnalysisJobDTO;
+import fr.uge.gitclout.dto.BlameCacheStatsDTO;
 import fr.uge.gitclout.dto.ContributionDTO;
+import fr.uge.gitclout.dto.PackCacheStatsDTO;
 import fr.uge.gitclout.dto.RepositoryDTO;
+import fr.uge.gitclout.dto.SchedulerStatsDTO;
+import fr.uge.gitclout.dto.StorageUsageDTO;
 import fr.uge.gitclout.gitanalyse.*;
 import fr.uge.gitclout.gitcloutexeption.AnalyzeException;
+import fr.uge.gitclout.gitcloutexeption.DeleteRepositoryException;
 import fr.uge.gitclout.database.DataBaseService;
+import io.micronaut.context.annotation.Value;
 import io.micronaut.http.HttpResponse;
 import io.micronaut.http.annotation.Body;
 import io.micronaut.transaction.annotation.Transactional;
+import jakarta.annotation.PreDestroy;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.storage.file.WindowCacheStats;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * GitService class for handling Git repository operations.
@@ -40,8 +57,48 @@ public class GitService  {
   @Inject
   ProgressWebSocket progressWebSocket;
   private final DatabaseManager databaseManager;
-  public GitService(DatabaseManager databaseManager) {
+  private final RepositoryMirrorStore repositoryMirrorStore;
+  private final InFlightAnalyses<HttpResponse<RepositoryDTO>> inFlightAnalyses = new InFlightAnalyses<>();
+  private final AnalysisJobs<HttpResponse<RepositoryDTO>> analysisJobs;
+  private final BlameStore blameStore;
+  private final AnalysisScheduler analysisScheduler;
+  private final long blameCacheMaxBytes;
+  private final Set<BlameCache> openBlameCaches = ConcurrentHashMap.newKeySet();
+  private final LongAdder closedBlameCacheHits = new LongAdder();
+  private final LongAdder closedBlameCacheMisses = new LongAdder();
+  private final LongAdder closedBlameCacheEvictions = new LongAdder();
+  private final AttributionMode defaultAttributionMode;
+  private final BlameFilter blameFilter;
+  private final LanguageRegistry languageRegistry;
+  private final RenameDetection renameDetection;
+  private final int contributionBuffer;
+  @Inject
+  public GitService(DatabaseManager databaseManager, RepositoryMirrorStore repositoryMirrorStore, BlameStore blameStore,
+                    AnalysisScheduler analysisScheduler, LanguageRegistry languageRegistry,
+                    @Value("${gitclout.blame.cache-max-bytes:268435456}") long blameCacheMaxBytes,
+                    @Value("${gitclout.analysis.attribution-mode:BLAME}") AttributionMode defaultAttributionMode,
+                    @Value("${gitclout.analysis.max-blob-bytes:1048576}") long maxBlobBytes,
+                    @Value("${gitclout.analysis.excluded-paths:}") String excludedPaths,
+                    @Value("${gitclout.analysis.renames.detect:true}") boolean detectRenames,
+                    @Value("${gitclout.analysis.renames.limit:1000}") int renameLimit,
+                    @Value("${gitclout.analysis.renames.score:60}") int renameScore,
+                    @Value("${gitclout.analysis.renames.follow-in-blame:true}") boolean followRenamesInBlame,
+                    @Value("${gitclout.analysis.contribution-buffer:16}") int contributionBuffer,
+                    @Value("${gitclout.jobs.retention:1h}") Duration jobRetention) {
+    this.defaultAttributionMode = defaultAttributionMode;
+    this.blameFilter = new BlameFilter(maxBlobBytes, List.of(excludedPaths.split(",")).stream()
+            .map(String::trim)
+            .filter(excludedPath -> !excludedPath.isEmpty())
+            .toList());
     this.databaseManager = databaseManager;
+    this.repositoryMirrorStore = repositoryMirrorStore;
+    this.blameStore = blameStore;
+    this.analysisScheduler = analysisScheduler;
+    this.languageRegistry = languageRegistry;
+    this.renameDetection = new RenameDetection(detectRenames, renameLimit, renameScore, followRenamesInBlame);
+    this.blameCacheMaxBytes = blameCacheMaxBytes;
+    this.contributionBuffer = contributionBuffer;
+    this.analysisJobs = new AnalysisJobs<>(jobRetention);
   }
   
 
@@ -58,20 +115,135 @@ public class GitService  {
 
 
   /**
-   * Processes a repository based on a request body.
+   * Processes a repository based on a request body, waiting for the job of its analysis.
+   * Requests for a repository already being analyzed with the same settings wait for that analysis and share its result,
+   * requests with other settings are queued behind it. The settings are the fetch scope, the attribution mode
+   * and the excluded paths.
    * @param requestBody The request body containing repository information.
    * @return HttpResponse containing the RepositoryDTO if successful, server error or not found otherwise.
    */
   public HttpResponse<RepositoryDTO> processRepository(@Body String requestBody) throws IOException, GitAPIException {
+    var job = submitAnalysis(requestBody);
+    if (job == null) {
+      return HttpResponse.badRequest();
+    }
+    var response = job.await();
+    if (response.body() == null) {
+      return HttpResponse.status(response.status());
+    }
+    return HttpResponse.status(response.status()).body(response.body());
+  }
+
+
+  /**
+   * Enqueues the analysis of a repository based on a request body, and returns its job without waiting for it.
+   * @param requestBody The request body containing repository information.
+   * @return HttpResponse accepted, containing the AnalysisJobDTO of the job, or bad request if the request body is invalid.
+   * @throws JsonProcessingException json processing exception
+   */
+  public HttpResponse<AnalysisJobDTO> submitRepository(String requestBody) throws JsonProcessingException {
+    var job = submitAnalysis(requestBody);
+    if (job == null) {
+      return HttpResponse.badRequest();
+    }
+    return HttpResponse.<AnalysisJobDTO>accepted().body(convertToAnalysisJobDTO(job));
+  }
+
+
+  /**
+   * Retrieves the state of an analysis job.
+   * @param id The id of the job.
+   * @return An Optional containing the AnalysisJobDTO if the job is known, or an empty Optional otherwise.
+   */
+  public Optional<AnalysisJobDTO> getJob(String id) {
+    Objects.requireNonNull(id);
+    var job = analysisJobs.get(id);
+    return job == null ? Optional.empty() : Optional.of(convertToAnalysisJobDTO(job));
+  }
+
+
+  /**
+   * Cancels an analysis job, which finishes at once. The analysis it shares with other jobs goes on for them,
+   * otherwise it stops before its next interval, file or commit, and a new repository is deleted with the contributions already written.
+   * @param id The id of the job.
+   * @return HttpResponse containing the AnalysisJobDTO if the job is known, not found otherwise.
+   */
+  public HttpResponse<AnalysisJobDTO> cancelJob(String id) {
+    Objects.requireNonNull(id);
+    var job = analysisJobs.get(id);
+    if (job == null) {
+      return HttpResponse.notFound();
+    }
+    job.cancel();
+    return HttpResponse.ok(convertToAnalysisJobDTO(job));
+  }
+
+
+  /**
+   * Enqueues the analysis of a repository based on a request body.
+   * @param requestBody The request body containing repository information.
+   * @return the job of the analysis, or null if the request body is invalid.
+   * @throws JsonProcessingException json processing exception
+   */
+  private AnalysisJob<HttpResponse<RepositoryDTO>> submitAnalysis(String requestBody) throws JsonProcessingException {
     String url = extractUrlFromRequestBody(requestBody);
-    var repo = new GitRepository(url);
-    var gitCloneManager = new GitCloneManager(repo);
-    var path = gitCloneManager.createTempDirectory();
-    var git = gitCloneManager.cloneToDirectory(path);
-    if (git == null) {
-      return HttpResponse.serverError();
+    GitRepository repo;
+    AttributionMode attributionMode;
+    List<String> excludedPaths;
+    BlameFilter filter;
+    try {
+      repo = new GitRepository(url, extractFetchScopeFromRequestBody(requestBody));
+      attributionMode = extractAttributionModeFromRequestBody(requestBody);
+      excludedPaths = extractExcludedPathsFromRequestBody(requestBody);
+      filter = blameFilter.excluding(excludedPaths);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    var settings = repo.fetchScope() + "#" + attributionMode + "#" + String.join(",", excludedPaths);
+    return analysisJobs.submit(url, job -> inFlightAnalyses.run(repo.normalizedUri(), settings, job,
+            flight -> analyzeRepository(repo, url, attributionMode, filter, flight)));
+  }
+
+
+  /**
+   * Converts an analysis job to its DTO.
+   * @param job The job.
+   * @return the AnalysisJobDTO describing the phase, the progress and the timings of the job.
+   */
+  private static AnalysisJobDTO convertToAnalysisJobDTO(AnalysisJob<HttpResponse<RepositoryDTO>> job) {
+    var result = job.resultNow();
+    var repositoryId = result == null || result.body() == null ? null : result.body().getId();
+    return new AnalysisJobDTO(job.id(), job.url(), job.phase().name(), job.percent(), job.submittedAt().toEpochMilli(),
+            toEpochMilli(job.startedAt()), toEpochMilli(job.finishedAt()), job.elapsed().toMillis(), job.error(), repositoryId);
+  }
+
+
+  private static Long toEpochMilli(Instant instant) {
+    return instant == null ? null : instant.toEpochMilli();
+  }
+
+
+  /**
+   * Analyzes a repository read from its mirror, which is cloned on the first request and fetched on the next ones.
+   * @param repo The repository to be analyzed.
+   * @param url The URL of the repository.
+   * @param attributionMode The way the added lines are attributed to their authors.
+   * @param blameFilter The filter of the analyzed files.
+   * @param flight The flight of the analysis, followed by the jobs sharing it.
+   * @return HttpResponse containing the RepositoryDTO if successful, server error or not found otherwise.
+   * @throws IOException io exception
+   * @throws GitAPIException api exception
+   */
+  private HttpResponse<RepositoryDTO> analyzeRepository(GitRepository repo, String url, AttributionMode attributionMode, BlameFilter blameFilter,
+                                                        InFlightAnalyses.Flight<HttpResponse<RepositoryDTO>> flight) throws IOException, GitAPIException {
+    flight.enter(AnalysisJob.Phase.CLONING);
+    try (var lease = repositoryMirrorStore.open(repo, flight::maintaining)) {
+      if (lease == null) {
+        return HttpResponse.serverError();
+      }
+      flight.enter(AnalysisJob.Phase.ANALYZING);
+      return processRepositoryAux(repo, lease.git(), new GitCloneManager(repo), url, attributionMode, blameFilter, flight);
     }
-    return processRepositoryAux(repo, git, gitCloneManager, url);
   }
 
 
@@ -81,24 +253,51 @@ public class GitService  {
    * @param git The Git object.
    * @param gitCloneManager The GitCloneManager object.
    * @param url The URL of the repository.
+   * @param attributionMode The way the added lines are attributed to their authors.
+   * @param blameFilter The filter of the analyzed files.
+   * @param flight The flight of the analysis, which receives its progress and can cancel it.
    * @return HttpResponse containing the RepositoryDTO if successful, server error or not found otherwise.
    * @throws GitAPIException api exception
    * @throws AnalyzeException analyze exception
    * @throws IOException io exception
    */
-  private HttpResponse<RepositoryDTO> processRepositoryAux(GitRepository repo, Git git, GitCloneManager gitCloneManager, String url) throws GitAPIException, AnalyzeException, IOException {
+  private HttpResponse<RepositoryDTO> processRepositoryAux(GitRepository repo, Git git, GitCloneManager gitCloneManager, String url, AttributionMode attributionMode, BlameFilter blameFilter,
+                                                           InFlightAnalyses.Flight<HttpResponse<RepositoryDTO>> flight) throws GitAPIException, AnalyzeException, IOException {
     var gitAnalysisService = new GitAnalysisService(repo, git, gitCloneManager);
-    var ContributionAnalyzer = new ContributionAnalyzer(progressWebSocket,git,gitAnalysisService);
-    GitAnalyze gitAnalyze = new GitAnalyze(ContributionAnalyzer, gitAnalysisService , new TagManagementService(), new ContributorManagementService());
-    Optional<Repository> existingRepo = databaseManager.findRepoByUrl(url);
-    if (existingRepo.isPresent()) {
-      return handleExistingRepository(existingRepo.get(), gitAnalyze,gitAnalysisService);
-    } else {
-      return analyzeAndSaveNewRepository(gitAnalyze);
+    ProgressListener progressListener = (done, total) -> {
+      flight.progress(done, total);
+      progressWebSocket.updateProgress(done, total);
+    };
+    var blameCache = new BlameCache(blameCacheMaxBytes);
+    openBlameCaches.add(blameCache);
+    var ContributionAnalyzer = new ContributionAnalyzer(progressListener, git, gitAnalysisService,
+            new AnalysisOptions(attributionMode, blameFilter, renameDetection, languageRegistry, blameCache, blameStore, analysisScheduler.lane()));
+    try (GitAnalyze gitAnalyze = new GitAnalyze(ContributionAnalyzer, gitAnalysisService , new TagManagementService(), new ContributorManagementService())) {
+      flight.onCancel(gitAnalyze::cancel);
+      Optional<Repository> existingRepo = databaseManager.findRepoByUrl(url);
+      if (existingRepo.isPresent()) {
+        return handleExistingRepository(existingRepo.get(), gitAnalyze);
+      } else {
+        return analyzeAndSaveNewRepository(gitAnalyze, url);
+      }
+    } finally {
+      closeBlameCache(blameCache);
     }
   }
 
 
+  /**
+   * Adds the lookups of the blame cache of a finished analysis to the statistics, which then forget the cache.
+   * @param blameCache the blame cache of the analysis.
+   */
+  private void closeBlameCache(BlameCache blameCache) {
+    openBlameCaches.remove(blameCache);
+    closedBlameCacheHits.add(blameCache.hitCount());
+    closedBlameCacheMisses.add(blameCache.missCount());
+    closedBlameCacheEvictions.add(blameCache.evictionCount());
+  }
+
+
   /**
    * Extracts the URL from a request body.
    * @param requestBody The request body containing repository information.
@@ -110,23 +309,92 @@ public class GitService  {
     return localMapper.readTree(requestBody).get("url").asText();
   }
   
+  /**
+   * Extracts the optional fetch scope from a request body, the whole repository is fetched by default.
+   * @param requestBody The request body containing repository information.
+   * @return The fetch scope.
+   * @throws JsonProcessingException json processing exception
+   * @throws IllegalArgumentException if the fetch scope is unknown
+   */
+  private FetchScope extractFetchScopeFromRequestBody(String requestBody) throws JsonProcessingException {
+    ObjectMapper localMapper = new ObjectMapper();
+    var fetchScope = localMapper.readTree(requestBody).get("fetchScope");
+    if (fetchScope == null || fetchScope.isNull()) {
+      return FetchScope.ALL;
+    }
+    return FetchScope.valueOf(fetchScope.asText().toUpperCase(Locale.ROOT));
+  }
+  
+  /**
+   * Extracts the optional attribution mode from a request body, the configured mode is used by default.
+   * @param requestBody The request body containing repository information.
+   * @return The attribution mode.
+   * @throws JsonProcessingException json processing exception
+   * @throws IllegalArgumentException if the attribution mode is unknown
+   */
+  private AttributionMode extractAttributionModeFromRequestBody(String requestBody) throws JsonProcessingException {
+    ObjectMapper localMapper = new ObjectMapper();
+    var attributionMode = localMapper.readTree(requestBody).get("attributionMode");
+    if (attributionMode == null || attributionMode.isNull()) {
+      return defaultAttributionMode;
+    }
+    return AttributionMode.valueOf(attributionMode.asText().toUpperCase(Locale.ROOT));
+  }
+  
+  /**
+   * Extracts the optional paths excluded from the analysis of this repository from a request body.
+   * @param requestBody The request body containing repository information.
+   * @return The globs of the excluded paths, empty by default.
+   * @throws JsonProcessingException json processing exception
+   * @throws IllegalArgumentException if the excluded paths are not an array of strings
+   */
+  private List<String> extractExcludedPathsFromRequestBody(String requestBody) throws JsonProcessingException {
+    ObjectMapper localMapper = new ObjectMapper();
+    var excludedPaths = localMapper.readTree(requestBody).get("excludedPaths");
+    if (excludedPaths == null || excludedPaths.isNull()) {
+      return List.of();
+    }
+    if (!excludedPaths.isArray()) {
+      throw new IllegalArgumentException("excludedPaths must be an array");
+    }
+    var result = new ArrayList<String>();
+    for (var excludedPath : excludedPaths) {
+      if (!excludedPath.isTextual() || excludedPath.asText().isBlank()) {
+        throw new IllegalArgumentException("excludedPaths must hold paths");
+      }
+      result.add(excludedPath.asText().trim());
+    }
+    return result;
+  }
+  
   /**
    * Handles an existing repository for the analysis.
+   * The repository and its new tags are saved before the new intervals are analyzed, then the contributions of each
+   * interval are written as soon as they are computed, like for a new repository.
+   * If the update fails once its new tags are saved, the repository is deleted with the contributions already written,
+   * to be analyzed again.
    * @param existingRepo The repository to be used.
    * @param gitAnalyze The GitAnalyze object.
-   * @param gitAnalysisService The GitAnalysisService object.
    * @return HttpResponse containing the RepositoryDTO if successful, server error or not found otherwise.
    * @throws AnalyzeException analyze exception
    * @throws GitAPIException api exception
    * @throws IOException io exception
    */
-  private HttpResponse<RepositoryDTO> handleExistingRepository(Repository existingRepo, GitAnalyze gitAnalyze , GitAnalysisService gitAnalysisService) throws AnalyzeException, GitAPIException, IOException {
-
-    var path = gitAnalysisService.cloneRepository();
-    if (path == null) {return HttpResponse.serverError();}
-    var updater = gitAnalyze.updateRepository(existingRepo);
+  private HttpResponse<RepositoryDTO> handleExistingRepository(Repository existingRepo, GitAnalyze gitAnalyze) throws AnalyzeException, GitAPIException, IOException {
+    Optional<GitAnalysisResult> updater;
+    var saved = new AtomicBoolean();
+    try (var contributionStream = new ContributionStream(contributions -> databaseManager.saveContributions(existingRepo, contributions), contributionBuffer)) {
+      updater = gitAnalyze.updateRepository(existingRepo, update -> {
+        databaseManager.updateRepo(Optional.of(update));
+        saved.set(true);
+      }, contributionStream);
+    } catch (IOException e) {
+      if (saved.get()) {
+        databaseManager.deleteRepository(existingRepo);
+      }
+      throw e;
+    }
     if (updater.isPresent()) {
-      databaseManager.updateRepo(updater);
       return processRepositoryAux(updater.get().getRepository());
     }
     return processRepositoryAux(existingRepo);
@@ -135,15 +403,29 @@ public class GitService  {
 
   /**
    * Analyses and saves the new repository.
+   * The repository and its tags are saved before its contributions are analyzed, then the contributions of each
+   * interval are written as soon as they are computed, so that they can be read while the analysis runs.
+   * If the analysis fails, the repository is deleted with the contributions already written, to be analyzed again.
    * @param gitAnalyze The GitAnalyze object.
+   * @param url The URL of the repository.
    * @return HttpResponse containing the RepositoryDTO if successful, server error or not found otherwise.
    * @throws AnalyzeException analyze exception
+   * @throws IOException if the contributions cannot be written
    */
-  private HttpResponse<RepositoryDTO> analyzeAndSaveNewRepository(GitAnalyze gitAnalyze) throws AnalyzeException {
+  private HttpResponse<RepositoryDTO> analyzeAndSaveNewRepository(GitAnalyze gitAnalyze, String url) throws AnalyzeException, IOException {
     Objects.requireNonNull(gitAnalyze);
-    var gitAnalysisResult = gitAnalyze.analyzeRepository();
+    Optional<GitAnalysisResult> gitAnalysisResult;
+    var repository = new AtomicReference<Repository>();
+    try (var contributionStream = new ContributionStream(contributions -> databaseManager.saveContributions(repository.get(), contributions), contributionBuffer)) {
+      gitAnalysisResult = gitAnalyze.analyzeRepository(result -> {
+        databaseManager.saveRepo(Optional.of(result));
+        repository.set(result.getRepository());
+      }, contributionStream);
+    } catch (IOException e) {
+      databaseManager.findRepoByUrl(url).ifPresent(databaseManager::deleteRepository);
+      throw e;
+    }
     if (gitAnalysisResult.isPresent()) {
-      databaseManager.saveRepo(gitAnalysisResult);
       return processRepositoryAux(gitAnalysisResult.get().getRepository());
     }
     return HttpResponse.notFound();
@@ -204,7 +486,7 @@ public class GitService  {
 
 
   /**
-   * Deletes a repository.
+   * Deletes a repository, and its mirror unless an analysis is using it.
    * @param linkRepository it's 
    * @return HttpResponse containing a message if successful, not found otherwise.
    */
@@ -212,8 +494,74 @@ public class GitService  {
     var repository = databaseManager.findRepoByUrl(linkRepository);
     if (repository.isPresent()) {
       databaseManager.deleteRepository(repository.get());
+      try {
+        repositoryMirrorStore.delete(new GitRepository(repository.get().getUrl()));
+      } catch (DeleteRepositoryException e) {
+        return HttpResponse.serverError("Repository deleted, but not its mirror");
+      }
       return HttpResponse.ok("Repository deleted");
     }
     return HttpResponse.notFound();
   }
+
+
+  /**
+   * Retrieves the disk usage of the mirror store.
+   * @return a StorageUsageDTO describing the mirrors kept on the disk.
+   */
+  public StorageUsageDTO getStorageUsage() {
+    return new StorageUsageDTO(repositoryMirrorStore.usedBytes(), repositoryMirrorStore.maxBytes(),
+            repositoryMirrorStore.mirrorCount(), repositoryMirrorStore.leasedCount(), repositoryMirrorStore.evictionCount());
+  }
+
+
+  /**
+   * Retrieves the statistics of the JGit pack cache, used to size the gitclout.jgit settings.
+   * @return a PackCacheStatsDTO with the hit, miss and eviction counts of the cache.
+   */
+  public PackCacheStatsDTO getPackCacheStats() {
+    return PackCacheStatsDTO.convertToPackCacheStatsDTO(WindowCacheStats.getStats());
+  }
+
+
+  /**
+   * Retrieves the statistics of the blame caches of the analyses.
+   * @return a BlameCacheStatsDTO with the lookups since the start of the application,
+   * and the entries and bytes held by the analyses running now.
+   */
+  public BlameCacheStatsDTO getBlameCacheStats() {
+    var hits = closedBlameCacheHits.sum();
+    var misses = closedBlameCacheMisses.sum();
+    var evictions = closedBlameCacheEvictions.sum();
+    var entries = 0;
+    var weightBytes = 0L;
+    var openCaches = List.copyOf(openBlameCaches);
+    for (var blameCache : openCaches) {
+      hits += blameCache.hitCount();
+      misses += blameCache.missCount();
+      evictions += blameCache.evictionCount();
+      entries += blameCache.entryCount();
+      weightBytes += blameCache.weightBytes();
+    }
+    return new BlameCacheStatsDTO(hits, misses, evictions, entries, weightBytes, openCaches.size());
+  }
+
+
+  /**
+   * Retrieves the gauges of the analysis scheduler shared by every analysis.
+   * @return a SchedulerStatsDTO with the queued, active and completed tasks and the concurrency limits.
+   */
+  public SchedulerStatsDTO getSchedulerStats() {
+    return new SchedulerStatsDTO(analysisScheduler.queuedCount(), analysisScheduler.activeCount(), analysisScheduler.completedCount(),
+            analysisScheduler.maxConcurrency(), analysisScheduler.maxConcurrencyPerRepository());
+  }
+
+
+  /**
+   * Cancels the analysis jobs still running when the application stops.
+   */
+  @PreDestroy
+  public void close() {
+    analysisJobs.close();
+  }
 }
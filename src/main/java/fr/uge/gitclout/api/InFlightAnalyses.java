@@ -0,0 +1,274 @@
+package fr.uge.gitclout.api;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class coalesces the concurrent analyses of a same repository.
+ * The first request for a key runs the analysis, the requests arriving while it runs with the same settings
+ * wait for its result instead of starting their own. A request with other settings waits for the analysis to finish,
+ * then runs its own, so that two analyses of a same repository never write it at the same time.
+ * The jobs of the requests sharing an analysis follow its phase and its progress. The analysis is only stopped
+ * when every one of them is cancelled, and a request arriving meanwhile waits for it to stop before running its own.
+ * @param <V> the type of the result of an analysis.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+class InFlightAnalyses<V> {
+
+  /**
+   * An analysis that can be coalesced, which reports its phases and its progress to its flight.
+   * @param <V> the type of its result.
+   */
+  @FunctionalInterface
+  interface SharedAnalysis<V> {
+    V run(Flight<V> flight) throws IOException, GitAPIException;
+  }
+
+  /**
+   * An analysis running for a key, with the settings it was started with and the jobs waiting for it.
+   * @param <V> the type of its result.
+   */
+  static final class Flight<V> {
+
+    private final String settings;
+    private final CompletableFuture<V> result = new CompletableFuture<>();
+    private final List<AnalysisJob<V>> jobs = new ArrayList<>();
+    private final List<Runnable> cancelActions = new ArrayList<>();
+    private AnalysisJob.Phase phase = AnalysisJob.Phase.QUEUED;
+    private int done;
+    private int total;
+    private int waitersWithoutJob;
+    private Thread thread;
+    private boolean cancelled;
+
+    private Flight(String settings) {
+      this.settings = settings;
+    }
+
+
+    /**
+     * Moves the analysis to a new phase, which the jobs waiting for it follow.
+     * @param phase the phase the analysis enters.
+     * @throws InterruptedIOException if the analysis is cancelled.
+     */
+    synchronized void enter(AnalysisJob.Phase phase) throws InterruptedIOException {
+      Objects.requireNonNull(phase);
+      if (phase.isFinal()) {
+        throw new IllegalArgumentException("an analysis finishes with its result");
+      }
+      if (cancelled) {
+        Thread.interrupted();
+        throw new InterruptedIOException("The analysis was cancelled");
+      }
+      setPhase(phase);
+    }
+
+
+    /**
+     * Moves the analysis to the maintenance of its mirror, once the clone or the fetch returned.
+     * The maintenance writes packs, so the thread of the analysis is not interrupted anymore: a cancellation
+     * stops the analysis when it enters its next phase.
+     */
+    synchronized void maintaining() {
+      if (cancelled) {
+        Thread.interrupted();
+      }
+      setPhase(AnalysisJob.Phase.MAINTAINING);
+    }
+
+
+    private void setPhase(AnalysisJob.Phase phase) {
+      this.phase = phase;
+      for (var job : jobs) {
+        job.follow(phase, done, total);
+      }
+    }
+
+
+    /**
+     * Records the progress of the analysis, which the jobs waiting for it follow.
+     * @param done the number of intervals analyzed so far.
+     * @param total the number of intervals to analyze.
+     */
+    synchronized void progress(int done, int total) {
+      this.done = done;
+      this.total = total;
+      for (var job : jobs) {
+        job.follow(phase, done, total);
+      }
+    }
+
+
+    /**
+     * Registers an action that stops the analysis once every job waiting for it is cancelled,
+     * run at once if the analysis is already cancelled.
+     * @param action the action stopping the analysis.
+     */
+    void onCancel(Runnable action) {
+      Objects.requireNonNull(action);
+      synchronized (this) {
+        if (!cancelled) {
+          cancelActions.add(action);
+          return;
+        }
+      }
+      action.run();
+    }
+
+
+    /**
+     * Adds a job to the jobs waiting for the analysis.
+     * @param job the job, or null if the request has no job.
+     * @return false if the analysis is cancelled, or if the job is.
+     */
+    private synchronized boolean attach(AnalysisJob<V> job) {
+      if (cancelled) {
+        return false;
+      }
+      if (job == null) {
+        waitersWithoutJob++;
+        return true;
+      }
+      if (!job.attach(this)) {
+        return false;
+      }
+      jobs.add(job);
+      job.follow(phase, done, total);
+      return true;
+    }
+
+
+    /**
+     * Removes a cancelled job from the jobs waiting for the analysis, and cancels the analysis if it was the last one
+     * and no request without a job waits for it.
+     * The thread of the analysis is only interrupted while it clones or fetches the repository.
+     * @param job the cancelled job.
+     */
+    void detach(AnalysisJob<V> job) {
+      List<Runnable> actions;
+      synchronized (this) {
+        if (!jobs.remove(job) || !jobs.isEmpty() || waitersWithoutJob > 0 || cancelled) {
+          return;
+        }
+        cancelled = true;
+        actions = List.copyOf(cancelActions);
+        cancelActions.clear();
+        if (thread != null && phase == AnalysisJob.Phase.CLONING) {
+          thread.interrupt();
+        }
+      }
+      actions.forEach(Runnable::run);
+    }
+
+
+    private synchronized void start() {
+      thread = Thread.currentThread();
+    }
+
+
+    private synchronized void stop() {
+      thread = null;
+      jobs.clear();
+      cancelActions.clear();
+    }
+  }
+
+  private final ConcurrentMap<String, Flight<V>> running = new ConcurrentHashMap<>();
+
+
+  /**
+   * Runs an analysis for a job, joins the one already running for the same key with the same settings,
+   * or waits for the one running with other settings, or cancelled, to finish before running this one.
+   * The job follows the phase and the progress of the analysis it runs or joins.
+   *
+   * @param key the key identifying the repository, usually its normalized uri.
+   * @param settings the settings changing the result of the analysis, like the attribution mode.
+   * @param job the job of the request, or null if the request has no job.
+   * @param analysis the analysis to run if none is running for the key with the same settings.
+   * @return the result of the analysis, shared by every request that joined it.
+   * @throws IOException if the analysis failed with an IOException, or if the job is cancelled while it waits.
+   * @throws GitAPIException if the analysis failed with a GitAPIException.
+   */
+  V run(String key, String settings, AnalysisJob<V> job, SharedAnalysis<V> analysis) throws IOException, GitAPIException {
+    Objects.requireNonNull(key);
+    Objects.requireNonNull(settings);
+    Objects.requireNonNull(analysis);
+    var flight = new Flight<V>(settings);
+    for (;;) {
+      var existing = running.putIfAbsent(key, flight);
+      if (existing == null) {
+        break;
+      }
+      if (existing.settings.equals(settings) && existing.attach(job)) {
+        return join(existing, job);
+      }
+      await(existing, job);
+    }
+    if (!flight.attach(job)) {
+      running.remove(key, flight);
+      throw new InterruptedIOException("The job was cancelled");
+    }
+    flight.start();
+    try {
+      var result = analysis.run(flight);
+      finish(key, flight);
+      flight.result.complete(result);
+      return result;
+    } catch (IOException | GitAPIException | RuntimeException | Error e) {
+      finish(key, flight);
+      flight.result.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+
+  private void finish(String key, Flight<V> flight) {
+    flight.stop();
+    running.remove(key, flight);
+  }
+
+
+  /**
+   * Waits for an analysis to finish, whatever its outcome, or for the job to be cancelled.
+   */
+  private static <V> void await(Flight<V> flight, AnalysisJob<V> job) throws InterruptedIOException {
+    if (job == null) {
+      flight.result.handle((result, failure) -> null).join();
+      return;
+    }
+    CompletableFuture.anyOf(flight.result, job.completion()).handle((result, failure) -> null).join();
+    if (job.phase().isFinal()) {
+      throw new InterruptedIOException("The job was cancelled");
+    }
+  }
+
+
+  private static <V> V join(Flight<V> flight, AnalysisJob<V> job) throws IOException, GitAPIException {
+    await(flight, job);
+    try {
+      return flight.result.join();
+    } catch (CompletionException e) {
+      var cause = e.getCause();
+      if (cause instanceof IOException ioException) {
+        throw ioException;
+      }
+      if (cause instanceof GitAPIException gitAPIException) {
+        throw gitAPIException;
+      }
+      if (cause instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw e;
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package fr.uge.gitclout.api;
 
+import fr.uge.gitclout.gitanalyse.ProgressListener;
 import io.micronaut.websocket.WebSocketBroadcaster;
 import io.micronaut.websocket.WebSocketSession;
 import io.micronaut.websocket.annotation.OnClose;
@@ -17,7 +18,7 @@ import org.slf4j.LoggerFactory;
  */
 @Singleton
 @ServerWebSocket("/progress")
-public class ProgressWebSocket {
+public class ProgressWebSocket implements ProgressListener {
   private static final Logger logger = LoggerFactory.getLogger(ProgressWebSocket.class);
   private final WebSocketBroadcaster broadcaster;
 
@@ -80,6 +81,7 @@ public class ProgressWebSocket {
     * @param tagProgress The progress of the tag.
     * @param tagSize The size of the tag.
    */
+  @Override
   public  void updateProgress(int tagProgress, int tagSize) {
     int progress;
     if (tagSize == 0) {
@@ -59,8 +59,7 @@ public class DataBaseService {
   
   @io.micronaut.data.annotation.Repository
   interface TagRepository extends CrudRepository<Tag, Long> {
-    Tag findByName(String name);
-    boolean existsByName(String tag);
+    Optional<Tag> findByRepositoryAndName(Repository repository, String name);
     Tag findBySha1(String sha1);
   }
 
@@ -122,8 +121,28 @@ public class DataBaseService {
   }
 
 
-  public Tag findTagByName(String name) {
-    return tagRepository.findByName(name);
+  /**
+   * Finds a tag of a repository by its full name, like release/2.0.
+   * The tags saved before their names kept their slashes are found by the last part of their name.
+   * @param repository the repository of the tag.
+   * @param name the full name of the tag, without "refs/tags/".
+   * @return the tag, or an empty Optional if the repository has no such tag.
+   */
+  public Optional<Tag> findTagByName(Repository repository, String name) {
+    Objects.requireNonNull(repository);
+    Objects.requireNonNull(name);
+    var tag = tagRepository.findByRepositoryAndName(repository, name);
+    var slash = name.lastIndexOf('/');
+    if (tag.isPresent() || slash == -1) {
+      return tag;
+    }
+    return tagRepository.findByRepositoryAndName(repository, name.substring(slash + 1));
+  }
+
+
+  public void update(Tag tag) {
+    Objects.requireNonNull(tag);
+    tagRepository.update(tag);
   }
 
   
@@ -143,11 +162,6 @@ public class DataBaseService {
   }
 
 
-  public boolean existsByNameTag(String tag){
-    return tagRepository.existsByName(tag);
-  }
-
-
   public Tag findBySha1(String sha1){
     return tagRepository.findBySha1(sha1);
   }
@@ -69,6 +69,11 @@ public class Tag {
     return name;
   }
 
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
   
   public void setSha1(String sha1) {
     this.sha1 = sha1;
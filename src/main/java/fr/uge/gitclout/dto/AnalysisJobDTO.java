@@ -0,0 +1,101 @@
+package fr.uge.gitclout.dto;
+
+import io.micronaut.core.annotation.Introspected;
+
+/**
+ * This class represents the state of an analysis job that will be sent to the front.
+ * The times are in milliseconds since the epoch, and are null until the job reaches them.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+@Introspected
+public class AnalysisJobDTO {
+  private final String id;
+  private final String url;
+  private final String phase;
+  private final int percent;
+  private final long submittedAt;
+  private final Long startedAt;
+  private final Long finishedAt;
+  private final long elapsedMillis;
+  private final String error;
+  private final Long repositoryId;
+
+  public AnalysisJobDTO(String id, String url, String phase, int percent, long submittedAt, Long startedAt, Long finishedAt,
+                        long elapsedMillis, String error, Long repositoryId) {
+    this.id = id;
+    this.url = url;
+    this.phase = phase;
+    this.percent = percent;
+    this.submittedAt = submittedAt;
+    this.startedAt = startedAt;
+    this.finishedAt = finishedAt;
+    this.elapsedMillis = elapsedMillis;
+    this.error = error;
+    this.repositoryId = repositoryId;
+  }
+
+
+  public String getId() {
+    return id;
+  }
+
+
+  public String getUrl() {
+    return url;
+  }
+
+
+  public String getPhase() {
+    return phase;
+  }
+
+
+  public int getPercent() {
+    return percent;
+  }
+
+
+  public long getSubmittedAt() {
+    return submittedAt;
+  }
+
+
+  public Long getStartedAt() {
+    return startedAt;
+  }
+
+
+  public Long getFinishedAt() {
+    return finishedAt;
+  }
+
+
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+
+  public String getError() {
+    return error;
+  }
+
+
+  public Long getRepositoryId() {
+    return repositoryId;
+  }
+
+
+  @Override
+  public String toString() {
+    return "AnalysisJobDTO{" +
+            "id='" + id + '\'' +
+            ", url='" + url + '\'' +
+            ", phase='" + phase + '\'' +
+            ", percent=" + percent +
+            ", elapsedMillis=" + elapsedMillis +
+            ", error='" + error + '\'' +
+            ", repositoryId=" + repositoryId +
+            '}';
+  }
+}
@@ -0,0 +1,80 @@
+package fr.uge.gitclout.dto;
+
+import io.micronaut.core.annotation.Introspected;
+
+/**
+ * This class represents the statistics of the blame caches of the analyses that will be sent to the front.
+ * The lookups are counted since the start of the application, the entries and the bytes are those held
+ * by the analyses running now.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+@Introspected
+public class BlameCacheStatsDTO {
+  private final long hitCount;
+  private final long missCount;
+  private final double hitRatio;
+  private final long evictionCount;
+  private final int entryCount;
+  private final long weightBytes;
+  private final int openCacheCount;
+
+  public BlameCacheStatsDTO(long hitCount, long missCount, long evictionCount, int entryCount, long weightBytes, int openCacheCount) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.hitRatio = hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount);
+    this.evictionCount = evictionCount;
+    this.entryCount = entryCount;
+    this.weightBytes = weightBytes;
+    this.openCacheCount = openCacheCount;
+  }
+
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+
+  public long getMissCount() {
+    return missCount;
+  }
+
+
+  public double getHitRatio() {
+    return hitRatio;
+  }
+
+
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+
+  public int getEntryCount() {
+    return entryCount;
+  }
+
+
+  public long getWeightBytes() {
+    return weightBytes;
+  }
+
+
+  public int getOpenCacheCount() {
+    return openCacheCount;
+  }
+
+
+  @Override
+  public String toString() {
+    return "BlameCacheStatsDTO{" +
+            "hitCount=" + hitCount +
+            ", missCount=" + missCount +
+            ", hitRatio=" + hitRatio +
+            ", evictionCount=" + evictionCount +
+            ", entryCount=" + entryCount +
+            ", weightBytes=" + weightBytes +
+            ", openCacheCount=" + openCacheCount +
+            '}';
+  }
+}
@@ -0,0 +1,85 @@
+package fr.uge.gitclout.dto;
+
+import io.micronaut.core.annotation.Introspected;
+import org.eclipse.jgit.storage.file.WindowCacheStats;
+
+import java.util.Objects;
+
+/**
+ * This class represents the statistics of the JGit pack cache that will be sent to the front.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+@Introspected
+public class PackCacheStatsDTO {
+  private final long hitCount;
+  private final long missCount;
+  private final double hitRatio;
+  private final long evictionCount;
+  private final long openFileCount;
+  private final long openByteCount;
+
+  public PackCacheStatsDTO(long hitCount, long missCount, double hitRatio, long evictionCount, long openFileCount, long openByteCount) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.hitRatio = hitRatio;
+    this.evictionCount = evictionCount;
+    this.openFileCount = openFileCount;
+    this.openByteCount = openByteCount;
+  }
+
+
+  /**
+   * This method converts the statistics of the JGit window cache to a PackCacheStatsDTO.
+   * @param stats the statistics of the window cache
+   * @return a PackCacheStatsDTO
+   */
+  public static PackCacheStatsDTO convertToPackCacheStatsDTO(WindowCacheStats stats) {
+    Objects.requireNonNull(stats);
+    return new PackCacheStatsDTO(stats.getHitCount(), stats.getMissCount(), stats.getHitRatio(),
+            stats.getEvictionCount(), stats.getOpenFileCount(), stats.getOpenByteCount());
+  }
+
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+
+  public long getMissCount() {
+    return missCount;
+  }
+
+
+  public double getHitRatio() {
+    return hitRatio;
+  }
+
+
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+
+  public long getOpenFileCount() {
+    return openFileCount;
+  }
+
+
+  public long getOpenByteCount() {
+    return openByteCount;
+  }
+
+
+  @Override
+  public String toString() {
+    return "PackCacheStatsDTO{" +
+            "hitCount=" + hitCount +
+            ", missCount=" + missCount +
+            ", hitRatio=" + hitRatio +
+            ", evictionCount=" + evictionCount +
+            ", openFileCount=" + openFileCount +
+            ", openByteCount=" + openByteCount +
+            '}';
+  }
+}
@@ -0,0 +1,62 @@
+package fr.uge.gitclout.dto;
+
+import io.micronaut.core.annotation.Introspected;
+
+/**
+ * This class represents the gauges of the analysis scheduler that will be sent to the front.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+@Introspected
+public class SchedulerStatsDTO {
+  private final int queuedCount;
+  private final int activeCount;
+  private final long completedCount;
+  private final int maxConcurrency;
+  private final int maxConcurrencyPerRepository;
+
+  public SchedulerStatsDTO(int queuedCount, int activeCount, long completedCount, int maxConcurrency, int maxConcurrencyPerRepository) {
+    this.queuedCount = queuedCount;
+    this.activeCount = activeCount;
+    this.completedCount = completedCount;
+    this.maxConcurrency = maxConcurrency;
+    this.maxConcurrencyPerRepository = maxConcurrencyPerRepository;
+  }
+
+
+  public int getQueuedCount() {
+    return queuedCount;
+  }
+
+
+  public int getActiveCount() {
+    return activeCount;
+  }
+
+
+  public long getCompletedCount() {
+    return completedCount;
+  }
+
+
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+
+  public int getMaxConcurrencyPerRepository() {
+    return maxConcurrencyPerRepository;
+  }
+
+
+  @Override
+  public String toString() {
+    return "SchedulerStatsDTO{" +
+            "queuedCount=" + queuedCount +
+            ", activeCount=" + activeCount +
+            ", completedCount=" + completedCount +
+            ", maxConcurrency=" + maxConcurrency +
+            ", maxConcurrencyPerRepository=" + maxConcurrencyPerRepository +
+            '}';
+  }
+}
@@ -0,0 +1,62 @@
+package fr.uge.gitclout.dto;
+
+import io.micronaut.core.annotation.Introspected;
+
+/**
+ * This class represents the disk usage of the cloned repositories that will be sent to the front.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+@Introspected
+public class StorageUsageDTO {
+  private final long usedBytes;
+  private final long maxBytes;
+  private final int mirrorCount;
+  private final int leasedCount;
+  private final long evictionCount;
+
+  public StorageUsageDTO(long usedBytes, long maxBytes, int mirrorCount, int leasedCount, long evictionCount) {
+    this.usedBytes = usedBytes;
+    this.maxBytes = maxBytes;
+    this.mirrorCount = mirrorCount;
+    this.leasedCount = leasedCount;
+    this.evictionCount = evictionCount;
+  }
+
+
+  public long getUsedBytes() {
+    return usedBytes;
+  }
+
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+
+  public int getMirrorCount() {
+    return mirrorCount;
+  }
+
+
+  public int getLeasedCount() {
+    return leasedCount;
+  }
+
+
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+
+  @Override
+  public String toString() {
+    return "StorageUsageDTO{" +
+            "usedBytes=" + usedBytes +
+            ", maxBytes=" + maxBytes +
+            ", mirrorCount=" + mirrorCount +
+            ", leasedCount=" + leasedCount +
+            ", evictionCount=" + evictionCount +
+            '}';
+  }
+}
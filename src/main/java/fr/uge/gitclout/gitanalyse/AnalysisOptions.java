@@ -0,0 +1,79 @@
+package fr.uge.gitclout.gitanalyse;
+
+import java.util.Objects;
+
+/**
+ * The settings of the analysis of a repository by a ContributionAnalyzer.
+ * Only the lane is required: {@link #of(AnalysisScheduler.Lane)} gives the default settings,
+ * which the with methods change one at a time.
+ * @param attributionMode the way the added lines are attributed to their authors.
+ * @param blameFilter the filter leaving binary, oversized, generated, vendored and excluded files out of the analysis.
+ * @param renameDetection the way the renamed files are detected in the diffs and followed in blame.
+ * @param languageRegistry the registry recognizing the language of the files.
+ * @param blameCache the cache of the blames computed during the analysis.
+ * @param blameStore the store keeping the blames on the disk between analyses, or null to not persist them.
+ *                   It is only used when blame follows the renames, the blames it holds being computed that way.
+ * @param lane the lane of the shared analysis scheduler running the tasks of the repository.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public record AnalysisOptions(AttributionMode attributionMode, BlameFilter blameFilter, RenameDetection renameDetection,
+                              LanguageRegistry languageRegistry, BlameCache blameCache, BlameStore blameStore,
+                              AnalysisScheduler.Lane lane) {
+
+  /**
+   * The default size of the blame cache, in bytes.
+   */
+  public static final long DEFAULT_BLAME_CACHE_BYTES = 256L * 1024 * 1024;
+
+  public AnalysisOptions {
+    Objects.requireNonNull(attributionMode);
+    Objects.requireNonNull(blameFilter);
+    Objects.requireNonNull(renameDetection);
+    Objects.requireNonNull(languageRegistry);
+    Objects.requireNonNull(blameCache);
+    Objects.requireNonNull(lane);
+  }
+
+
+  /**
+   * Returns the default settings: blame attribution, the default filter, rename detection and languages,
+   * a blame cache of the default size and no blame store.
+   * @param lane the lane of the shared analysis scheduler running the tasks of the repository.
+   * @return the default settings running on the lane.
+   */
+  public static AnalysisOptions of(AnalysisScheduler.Lane lane) {
+    return new AnalysisOptions(AttributionMode.BLAME, new BlameFilter(), new RenameDetection(), new LanguageRegistry(),
+            new BlameCache(DEFAULT_BLAME_CACHE_BYTES), null, lane);
+  }
+
+
+  public AnalysisOptions withAttributionMode(AttributionMode attributionMode) {
+    return new AnalysisOptions(attributionMode, blameFilter, renameDetection, languageRegistry, blameCache, blameStore, lane);
+  }
+
+
+  public AnalysisOptions withBlameFilter(BlameFilter blameFilter) {
+    return new AnalysisOptions(attributionMode, blameFilter, renameDetection, languageRegistry, blameCache, blameStore, lane);
+  }
+
+
+  public AnalysisOptions withRenameDetection(RenameDetection renameDetection) {
+    return new AnalysisOptions(attributionMode, blameFilter, renameDetection, languageRegistry, blameCache, blameStore, lane);
+  }
+
+
+  public AnalysisOptions withLanguageRegistry(LanguageRegistry languageRegistry) {
+    return new AnalysisOptions(attributionMode, blameFilter, renameDetection, languageRegistry, blameCache, blameStore, lane);
+  }
+
+
+  public AnalysisOptions withBlameCache(BlameCache blameCache) {
+    return new AnalysisOptions(attributionMode, blameFilter, renameDetection, languageRegistry, blameCache, blameStore, lane);
+  }
+
+
+  public AnalysisOptions withBlameStore(BlameStore blameStore) {
+    return new AnalysisOptions(attributionMode, blameFilter, renameDetection, languageRegistry, blameCache, blameStore, lane);
+  }
+}
@@ -0,0 +1,215 @@
+package fr.uge.gitclout.gitanalyse;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class runs the tasks of every analysis of the application on virtual threads.
+ * The number of tasks running at the same time is limited for the whole application and for each repository,
+ * so that concurrent analyses share the hardware instead of each starting its own pool.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+@Singleton
+public class AnalysisScheduler implements AutoCloseable {
+
+  private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
+  private final Semaphore globalPermits;
+  private final int maxConcurrency;
+  private final int maxConcurrencyPerRepository;
+  private final AtomicInteger queuedCount = new AtomicInteger();
+  private final AtomicInteger activeCount = new AtomicInteger();
+  private final LongAdder completedCount = new LongAdder();
+
+  /**
+   * Constructs a new AnalysisScheduler.
+   * @param maxConcurrency the number of tasks running at the same time in the application, 0 for the number of cores.
+   * @param maxConcurrencyPerRepository the number of tasks running at the same time for one repository, 0 for the number of cores.
+   */
+  @Inject
+  public AnalysisScheduler(@Value("${gitclout.analysis.max-concurrency:0}") int maxConcurrency,
+                           @Value("${gitclout.analysis.max-concurrency-per-repository:0}") int maxConcurrencyPerRepository) {
+    if (maxConcurrency < 0 || maxConcurrencyPerRepository < 0) {
+      throw new IllegalArgumentException("the concurrency limits must be positive");
+    }
+    var cores = Runtime.getRuntime().availableProcessors();
+    this.maxConcurrency = maxConcurrency == 0 ? cores : maxConcurrency;
+    this.maxConcurrencyPerRepository = maxConcurrencyPerRepository == 0 ? cores : maxConcurrencyPerRepository;
+    this.globalPermits = new Semaphore(this.maxConcurrency, true);
+  }
+
+
+  /**
+   * Constructs a new AnalysisScheduler sized after the number of cores.
+   */
+  public AnalysisScheduler() {
+    this(0, 0);
+  }
+
+
+  /**
+   * Returns a lane for the tasks of one repository, limited to the per-repository concurrency.
+   * @return a new lane.
+   */
+  public Lane lane() {
+    return new Lane(new Semaphore(maxConcurrencyPerRepository, true));
+  }
+
+
+  public int maxConcurrency() {
+    return maxConcurrency;
+  }
+
+
+  public int maxConcurrencyPerRepository() {
+    return maxConcurrencyPerRepository;
+  }
+
+
+  /**
+   * Returns the number of tasks waiting for a permit.
+   * @return the queue depth.
+   */
+  public int queuedCount() {
+    return queuedCount.get();
+  }
+
+
+  /**
+   * Returns the number of tasks currently running.
+   * @return the number of active tasks.
+   */
+  public int activeCount() {
+    return activeCount.get();
+  }
+
+
+  public long completedCount() {
+    return completedCount.sum();
+  }
+
+
+  @PreDestroy
+  @Override
+  public void close() {
+    executorService.shutdownNow();
+  }
+
+
+  /**
+   * This class runs the tasks of one repository through the scheduler.
+   */
+  public final class Lane {
+
+    private final Semaphore repositoryPermits;
+
+    private Lane(Semaphore repositoryPermits) {
+      this.repositoryPermits = repositoryPermits;
+    }
+
+
+    /**
+     * Returns the number of tasks of this lane that can run at the same time.
+     * @return the per-repository concurrency.
+     */
+    public int maxConcurrency() {
+      return maxConcurrencyPerRepository;
+    }
+
+
+    /**
+     * Runs tasks and waits until all of them are done, like ExecutorService.invokeAll.
+     * If the calling thread is interrupted, the tasks not done yet are cancelled.
+     *
+     * @param tasks the tasks to run.
+     * @param <T> the type of the result of the tasks.
+     * @return the futures of the tasks, in the order of the tasks, all done.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+      return submitAll(tasks, true);
+    }
+
+
+    /**
+     * Runs parts of the work of this lane, each submitting its own tasks to the lane, and waits until all of them are done.
+     * The parts take no permit, since they only wait for their tasks: holding one would starve these tasks.
+     *
+     * @param parts the parts to run.
+     * @param <T> the type of the result of the parts.
+     * @return the futures of the parts, in the order of the parts, all done.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public <T> List<Future<T>> split(Collection<? extends Callable<T>> parts) throws InterruptedException {
+      return submitAll(parts, false);
+    }
+
+
+    private <T> List<Future<T>> submitAll(Collection<? extends Callable<T>> tasks, boolean limited) throws InterruptedException {
+      Objects.requireNonNull(tasks);
+      var futures = new ArrayList<Future<T>>(tasks.size());
+      try {
+        for (var task : tasks) {
+          futures.add(executorService.submit(limited ? () -> run(task) : task));
+        }
+        for (var future : futures) {
+          try {
+            future.get();
+          } catch (ExecutionException | CancellationException e) {
+            // the caller reads the outcome from the future
+          }
+        }
+        return futures;
+      } catch (InterruptedException e) {
+        for (var future : futures) {
+          future.cancel(true);
+        }
+        throw e;
+      }
+    }
+
+
+    private <T> T run(Callable<T> task) throws Exception {
+      queuedCount.incrementAndGet();
+      try {
+        repositoryPermits.acquire();
+      } catch (InterruptedException e) {
+        queuedCount.decrementAndGet();
+        throw e;
+      }
+      try {
+        try {
+          globalPermits.acquire();
+        } finally {
+          queuedCount.decrementAndGet();
+        }
+        activeCount.incrementAndGet();
+        try {
+          return task.call();
+        } finally {
+          activeCount.decrementAndGet();
+          completedCount.increment();
+          globalPermits.release();
+        }
+      } finally {
+        repositoryPermits.release();
+      }
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package fr.uge.gitclout.gitanalyse;
+
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * This class holds the object readers, diff formatters and revision walks used by one analysis of a repository.
+ * The tasks of the analysis run on virtual threads, so the tools are not bound to a thread: a task borrows a handle,
+ * uses its tools alone, and gives it back when it is done, so that there are never more handles than tasks running
+ * at the same time. The handles are closed, with their pack files, when the session is closed. A closed session
+ * can be used again, it then opens new handles that the next close releases.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+final class AnalysisSession implements AutoCloseable {
+
+  private final Repository repository;
+  private final RenameDetection renameDetection;
+  private final ConcurrentLinkedDeque<Handle> idle = new ConcurrentLinkedDeque<>();
+  private final Set<Handle> opened = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Constructs a new AnalysisSession.
+   * @param repository the analyzed repository.
+   * @param renameDetection the way the renames are detected by the diff formatters.
+   */
+  AnalysisSession(Repository repository, RenameDetection renameDetection) {
+    this.repository = Objects.requireNonNull(repository);
+    this.renameDetection = Objects.requireNonNull(renameDetection);
+  }
+
+
+  /**
+   * Returns the analyzed repository.
+   * @return the repository.
+   */
+  Repository repository() {
+    return repository;
+  }
+
+
+  /**
+   * Returns the way the renames are detected in the diffs and followed in blame.
+   * @return the rename detection.
+   */
+  RenameDetection renameDetection() {
+    return renameDetection;
+  }
+
+
+  /**
+   * Borrows a handle, which must be given back by closing it.
+   * @return an idle handle, or a new one if they are all in use.
+   */
+  Handle acquire() {
+    var handle = idle.pollFirst();
+    if (handle == null) {
+      handle = new Handle();
+      opened.add(handle);
+    }
+    return handle;
+  }
+
+
+  /**
+   * Returns the number of handles opened since the session was last closed.
+   * @return the number of open handles.
+   */
+  int size() {
+    return opened.size();
+  }
+
+
+  /**
+   * Closes the handles of the session, which must all have been given back.
+   */
+  @Override
+  public void close() {
+    idle.clear();
+    for (var handle : opened) {
+      handle.release();
+    }
+    opened.clear();
+  }
+
+
+  /**
+   * This class holds the tools borrowed by one task: an object reader, a diff formatter reading through it
+   * and detecting the renames of the session, and a revision walk reading through it.
+   */
+  final class Handle implements AutoCloseable {
+
+    private final ObjectReader reader;
+    private final DiffFormatter diffFormatter;
+    private final RevWalk revWalk;
+
+    private Handle() {
+      reader = repository.newObjectReader();
+      diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE);
+      diffFormatter.setReader(reader, repository.getConfig());
+      renameDetection.apply(diffFormatter);
+      revWalk = new RevWalk(reader);
+    }
+
+
+    /**
+     * Returns the object reader of the handle.
+     * @return the object reader.
+     */
+    ObjectReader reader() {
+      return reader;
+    }
+
+
+    /**
+     * Returns the diff formatter of the handle.
+     * @return the diff formatter.
+     */
+    DiffFormatter diffFormatter() {
+      return diffFormatter;
+    }
+
+
+    /**
+     * Returns the revision walk of the handle, only meant to parse objects: a traversal needs its own walk.
+     * @return the revision walk.
+     */
+    RevWalk revWalk() {
+      return revWalk;
+    }
+
+
+    /**
+     * Gives the handle back to the session, which keeps it open for the next task.
+     */
+    @Override
+    public void close() {
+      if (opened.contains(this)) {
+        idle.addFirst(this);
+      }
+    }
+
+
+    private void release() {
+      revWalk.close();
+      diffFormatter.close();
+      reader.close();
+    }
+  }
+}
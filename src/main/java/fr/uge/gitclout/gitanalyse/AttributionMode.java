@@ -0,0 +1,14 @@
+package fr.uge.gitclout.gitanalyse;
+
+/**
+ * This enum contains the ways the lines added between two tags are attributed to their authors.
+ * BLAME credits each line inserted between the two tag snapshots to the author blame finds for it.
+ * DIFF walks the commits between the two tags and credits the lines each commit inserts to its author;
+ * it needs no blame and is much faster, but also counts the lines rewritten or removed before the second tag.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public enum AttributionMode {
+  BLAME,
+  DIFF
+}
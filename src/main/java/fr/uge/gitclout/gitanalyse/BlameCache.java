@@ -0,0 +1,138 @@
+package fr.uge.gitclout.gitanalyse;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+/**
+ * This class caches the blames of the files of a repository.
+ * A blame is identified by the path of the file and the commit it starts from, and the cache holds
+ * at most a given number of bytes, evicting the least recently used blames first.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public final class BlameCache {
+
+  private record Key(String path, ObjectId commitId) {}
+
+  private final LinkedHashMap<Key, LineOwnership> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final long maxBytes;
+  private long weightBytes;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  /**
+   * Constructs a new BlameCache.
+   * @param maxBytes the estimated number of bytes the cache can hold.
+   */
+  public BlameCache(long maxBytes) {
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("maxBytes must be positive");
+    }
+    this.maxBytes = maxBytes;
+  }
+
+
+  /**
+   * Returns the blame of a file started at a commit, if it is cached.
+   *
+   * @param path the path of the file.
+   * @param commitId the commit the blame starts from.
+   * @return the cached blame, or null.
+   */
+  public synchronized LineOwnership get(String path, ObjectId commitId) {
+    var ownership = entries.get(new Key(Objects.requireNonNull(path), commitId.copy()));
+    if (ownership == null) {
+      missCount++;
+    } else {
+      hitCount++;
+    }
+    return ownership;
+  }
+
+
+  /**
+   * Caches the blame of a file started at a commit, then evicts the least recently used blames
+   * until the cache fits in its budget. A blame larger than the whole budget is not cached.
+   *
+   * @param path the path of the file.
+   * @param commitId the commit the blame starts from.
+   * @param ownership the blame to cache.
+   */
+  public synchronized void put(String path, ObjectId commitId, LineOwnership ownership) {
+    Objects.requireNonNull(ownership);
+    var weight = ownership.estimatedBytes();
+    if (weight > maxBytes) {
+      return;
+    }
+    var previous = entries.put(new Key(Objects.requireNonNull(path), commitId.copy()), ownership);
+    if (previous != null) {
+      weightBytes -= previous.estimatedBytes();
+    }
+    weightBytes += weight;
+    var iterator = entries.values().iterator();
+    while (weightBytes > maxBytes && iterator.hasNext()) {
+      weightBytes -= iterator.next().estimatedBytes();
+      iterator.remove();
+      evictionCount++;
+    }
+  }
+
+
+  /**
+   * Returns the ratio of lookups that found their blame in the cache.
+   * @return the hit rate, between 0 and 1.
+   */
+  public synchronized double hitRate() {
+    var lookups = hitCount + missCount;
+    return lookups == 0 ? 0 : (double) hitCount / lookups;
+  }
+
+
+  public synchronized long hitCount() {
+    return hitCount;
+  }
+
+
+  public synchronized long missCount() {
+    return missCount;
+  }
+
+
+  public synchronized long evictionCount() {
+    return evictionCount;
+  }
+
+
+  public synchronized int entryCount() {
+    return entries.size();
+  }
+
+
+  /**
+   * Returns the estimated number of bytes held by the cached blames.
+   * @return the number of bytes held.
+   */
+  public synchronized long weightBytes() {
+    return weightBytes;
+  }
+
+
+  public long maxBytes() {
+    return maxBytes;
+  }
+
+
+  @Override
+  public synchronized String toString() {
+    return "BlameCache{" +
+            "entries=" + entries.size() +
+            ", weightBytes=" + weightBytes +
+            ", maxBytes=" + maxBytes +
+            ", hitRate=" + String.format("%.2f", hitRate()) +
+            ", evictions=" + evictionCount +
+            '}';
+  }
+}
@@ -0,0 +1,188 @@
+package fr.uge.gitclout.gitanalyse;
+
+import org.eclipse.jgit.attributes.Attributes;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * This class decides which files are left out of the analysis before they are blamed.
+ * A file is skipped if its path matches one of the excluded globs, if the .gitattributes of the repository
+ * mark it linguist-generated or linguist-vendored, if its blob is larger than the maximum size, or if it is binary.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public final class BlameFilter {
+
+  /**
+   * The default maximum size of a blob, above which a file is not analyzed.
+   */
+  public static final long DEFAULT_MAX_BLOB_BYTES = 1024 * 1024;
+
+  private static final String GENERATED = "linguist-generated";
+  private static final String VENDORED = "linguist-vendored";
+
+  private final long maxBlobBytes;
+  private final List<String> excludedPaths;
+  private final List<PathMatcher> matchers;
+
+  /**
+   * Constructs a new BlameFilter.
+   * @param maxBlobBytes the maximum size of a blob, in bytes.
+   * @param excludedPaths the globs of the paths to exclude, like "vendor/**" or "**&#47;*.min.js".
+   * @throws IllegalArgumentException if the maximum size is not positive or a glob is invalid.
+   */
+  public BlameFilter(long maxBlobBytes, List<String> excludedPaths) {
+    if (maxBlobBytes <= 0) {
+      throw new IllegalArgumentException("maxBlobBytes must be positive");
+    }
+    this.maxBlobBytes = maxBlobBytes;
+    this.excludedPaths = List.copyOf(excludedPaths);
+    var fileSystem = FileSystems.getDefault();
+    var matchers = new ArrayList<PathMatcher>();
+    for (var excludedPath : this.excludedPaths) {
+      matchers.add(fileSystem.getPathMatcher("glob:" + excludedPath));
+      if (excludedPath.startsWith("**/")) {
+        matchers.add(fileSystem.getPathMatcher("glob:" + excludedPath.substring(3)));
+      }
+    }
+    this.matchers = List.copyOf(matchers);
+  }
+
+
+  /**
+   * Constructs a new BlameFilter with the default maximum blob size and no excluded path.
+   */
+  public BlameFilter() {
+    this(DEFAULT_MAX_BLOB_BYTES, List.of());
+  }
+
+
+  /**
+   * Returns a filter excluding more paths than this one.
+   * @param paths the globs of the paths to exclude too.
+   * @return a new BlameFilter.
+   * @throws IllegalArgumentException if a glob is invalid.
+   */
+  public BlameFilter excluding(Collection<String> paths) {
+    var excluded = new ArrayList<>(excludedPaths);
+    excluded.addAll(paths);
+    return new BlameFilter(maxBlobBytes, excluded);
+  }
+
+
+  public long maxBlobBytes() {
+    return maxBlobBytes;
+  }
+
+
+  public List<String> excludedPaths() {
+    return excludedPaths;
+  }
+
+
+  /**
+   * Finds the files marked linguist-generated or linguist-vendored by the .gitattributes of a commit.
+   *
+   * @param repository the repository of the commit.
+   * @param commit the commit whose attributes are read.
+   * @param paths the paths to look at, or null for every file of the commit.
+   * @return the reason to skip each marked path.
+   * @throws IOException if the tree of the commit cannot be read.
+   */
+  public Map<String, SkipReason> markedPaths(Repository repository, RevCommit commit, Collection<String> paths) throws IOException {
+    Objects.requireNonNull(repository);
+    Objects.requireNonNull(commit);
+    var marked = new HashMap<String, SkipReason>();
+    if (paths != null && paths.isEmpty()) {
+      return marked;
+    }
+    try (var treeWalk = new TreeWalk(repository)) {
+      treeWalk.setAttributesNodeProvider(repository.createAttributesNodeProvider());
+      treeWalk.addTree(commit.getTree());
+      treeWalk.setRecursive(true);
+      if (paths != null) {
+        treeWalk.setFilter(PathFilterGroup.createFromStrings(paths));
+      }
+      while (treeWalk.next()) {
+        var attributes = treeWalk.getAttributes();
+        if (isSet(attributes, GENERATED)) {
+          marked.put(treeWalk.getPathString(), SkipReason.GENERATED);
+        } else if (isSet(attributes, VENDORED)) {
+          marked.put(treeWalk.getPathString(), SkipReason.VENDORED);
+        }
+      }
+    }
+    return marked;
+  }
+
+
+  /**
+   * Checks if a file is left out of the analysis.
+   *
+   * @param reader the reader of the repository of the file.
+   * @param path the path of the file.
+   * @param blobId the blob of the file.
+   * @param markedPaths the paths marked by the .gitattributes, as found by markedPaths.
+   * @return the reason to skip the file, or null if it is analyzed.
+   * @throws IOException if the blob cannot be read.
+   */
+  public SkipReason check(ObjectReader reader, String path, AnyObjectId blobId, Map<String, SkipReason> markedPaths) throws IOException {
+    Objects.requireNonNull(reader);
+    Objects.requireNonNull(path);
+    Objects.requireNonNull(blobId);
+    if (isExcluded(path)) {
+      return SkipReason.EXCLUDED;
+    }
+    var marked = markedPaths.get(path);
+    if (marked != null) {
+      return marked;
+    }
+    if (reader.getObjectSize(blobId, Constants.OBJ_BLOB) > maxBlobBytes) {
+      return SkipReason.OVERSIZED;
+    }
+    try (var input = reader.open(blobId, Constants.OBJ_BLOB).openStream()) {
+      return RawText.isBinary(input) ? SkipReason.BINARY : null;
+    }
+  }
+
+
+  /**
+   * Checks if a path matches one of the excluded globs.
+   * @param path the path of the file, relative to the root of the repository.
+   * @return true if the path is excluded.
+   */
+  public boolean isExcluded(String path) {
+    if (matchers.isEmpty()) {
+      return false;
+    }
+    var file = Path.of(path);
+    for (var matcher : matchers) {
+      if (matcher.matches(file)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+
+  private static boolean isSet(Attributes attributes, String name) {
+    return attributes.isSet(name) || "true".equalsIgnoreCase(attributes.getValue(name));
+  }
+}
@@ -0,0 +1,531 @@
+package fr.uge.gitclout.gitanalyse;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * This class stores the blames on the disk, so that they survive a restart of the application.
+ * A blame is identified by the blob of the file and the commit it starts from, and is stored as ranges
+ * of lines mapped to the index of their author. The records are appended to a single file read through
+ * a memory mapping; when the file exceeds its cap, it is compacted to keep only the most recently used blames.
+ * Each record carries a checksum of its content: a record that fails it, or that lies outside of the file,
+ * is dropped and read as a miss, so that a damaged file only costs the blames it held.
+ * The blames are read concurrently, the writes and the compactions exclude them.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+@Singleton
+public class BlameStore implements AutoCloseable {
+
+  private static final Logger logger = LoggerFactory.getLogger(BlameStore.class);
+  private static final String DATA_FILE = "blames.dat";
+  private static final int MAGIC = 0x47424c32;
+  private static final int HEADER_BYTES = Integer.BYTES;
+  private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+  private static final int KEY_BYTES = 2 * Constants.OBJECT_ID_LENGTH;
+  private static final int NO_AUTHOR = -1;
+
+  private record Key(ObjectId blobId, ObjectId commitId) {}
+
+  /**
+   * The place of a record in the file, and the last time it was used, on the clock of the store.
+   */
+  private static final class Slot {
+    private final long offset;
+    private volatile long lastUse;
+
+    private Slot(long offset, long lastUse) {
+      this.offset = offset;
+      this.lastUse = lastUse;
+    }
+  }
+
+  /**
+   * The content of a record: the distinct authors, and the index of the author of each line.
+   */
+  private record Authors(List<String> names, List<String> emails, int[] lines) {}
+
+  private final Path dataFile;
+  private final long maxBytes;
+  private final Map<Key, Slot> index = new ConcurrentHashMap<>();
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Object mappingLock = new Object();
+  private final AtomicLong clock = new AtomicLong();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private FileChannel channel;
+  private volatile MappedByteBuffer mapped;
+  private long sizeBytes;
+  private long compactionCount;
+
+  /**
+   * Constructs a new BlameStore, reading the blames already stored in its directory.
+   * @param root the directory of the store.
+   * @param maxBytes the size of the store file above which it is compacted.
+   * @throws IOException if the store cannot be opened.
+   */
+  @Inject
+  public BlameStore(@Value("${gitclout.blame.store.root:blame-store}") String root,
+                    @Value("${gitclout.blame.store.max-bytes:1073741824}") long maxBytes) throws IOException {
+    if (maxBytes <= 0 || maxBytes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("maxBytes must be between 1 and " + Integer.MAX_VALUE);
+    }
+    var directory = Path.of(Objects.requireNonNull(root)).toAbsolutePath().normalize();
+    Files.createDirectories(directory);
+    this.dataFile = directory.resolve(DATA_FILE);
+    this.maxBytes = maxBytes;
+    open();
+  }
+
+
+  /**
+   * Returns the ids of the authors of the lines of a blob blamed from a commit, if they are stored.
+   *
+   * @param blobId the blob of the file.
+   * @param commitId the commit the blame starts from.
+   * @param dictionary the contributor dictionary giving the ids.
+   * @return the id of the author of each line, or null if the blame is not stored.
+   * @throws IOException if the store cannot be read.
+   */
+  int[] get(ObjectId blobId, ObjectId commitId, ContributorDictionary dictionary) throws IOException {
+    Objects.requireNonNull(dictionary);
+    var authors = read(blobId, commitId);
+    if (authors == null) {
+      return null;
+    }
+    var ids = new int[authors.names().size()];
+    for (var i = 0; i < ids.length; i++) {
+      ids[i] = dictionary.idOf(authors.names().get(i), authors.emails().get(i));
+    }
+    var result = authors.lines();
+    for (var line = 0; line < result.length; line++) {
+      result[line] = result[line] == NO_AUTHOR ? ContributorDictionary.UNKNOWN : ids[result[line]];
+    }
+    return result;
+  }
+
+
+  /**
+   * Stores the ids of the authors of the lines of a blob blamed from a commit.
+   * The store is compacted first if the new record would make it exceed its cap.
+   *
+   * @param blobId the blob of the file.
+   * @param commitId the commit the blame starts from.
+   * @param authors the id of the author of each line, -1 for a line that could not be attributed.
+   * @param dictionary the contributor dictionary giving the ids.
+   * @throws IOException if the store cannot be written.
+   */
+  void put(ObjectId blobId, ObjectId commitId, int[] authors, ContributorDictionary dictionary) throws IOException {
+    Objects.requireNonNull(authors);
+    Objects.requireNonNull(dictionary);
+    var indexes = new HashMap<Integer, Integer>();
+    var names = new ArrayList<String>();
+    var emails = new ArrayList<String>();
+    var lines = new int[authors.length];
+    for (var line = 0; line < lines.length; line++) {
+      var author = authors[line];
+      lines[line] = author == ContributorDictionary.UNKNOWN ? NO_AUTHOR : indexes.computeIfAbsent(author, __ -> {
+        names.add(dictionary.name(author));
+        emails.add(dictionary.email(author));
+        return names.size() - 1;
+      });
+    }
+    write(blobId, commitId, new Authors(names, emails, lines));
+  }
+
+
+  private Authors read(ObjectId blobId, ObjectId commitId) throws IOException {
+    var key = new Key(blobId.copy(), commitId.copy());
+    lock.readLock().lock();
+    try {
+      var slot = index.get(key);
+      var authors = slot == null ? null : readRecord(key, slot);
+      if (authors == null) {
+        missCount.incrementAndGet();
+        return null;
+      }
+      slot.lastUse = clock.incrementAndGet();
+      hitCount.incrementAndGet();
+      return authors;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+
+  /**
+   * Reads the record of a key, dropping it from the index if it lies outside of the file,
+   * fails its checksum, holds another key or cannot be decoded.
+   * @return the content of the record, or null if it is dropped.
+   */
+  private Authors readRecord(Key key, Slot slot) throws IOException {
+    var payload = payload(slot.offset);
+    if (payload != null && readId(payload).equals(key.blobId()) && readId(payload).equals(key.commitId())) {
+      try {
+        return decode(payload);
+      } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+        logger.warn("Undecodable blame record", e);
+      }
+    }
+    logger.warn("Dropping the corrupted blame of {} from {}", key.blobId().name(), key.commitId().name());
+    index.remove(key, slot);
+    return null;
+  }
+
+
+  private void write(ObjectId blobId, ObjectId commitId, Authors authors) throws IOException {
+    var key = new Key(blobId.copy(), commitId.copy());
+    var record = encode(key, authors);
+    if (record.remaining() > maxBytes / 2) {
+      return;
+    }
+    lock.writeLock().lock();
+    try {
+      if (index.containsKey(key)) {
+        return;
+      }
+      if (sizeBytes + record.remaining() > maxBytes) {
+        compact();
+      }
+      var offset = sizeBytes;
+      while (record.hasRemaining()) {
+        sizeBytes += channel.write(record, sizeBytes);
+      }
+      index.put(key, new Slot(offset, clock.incrementAndGet()));
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+
+  /**
+   * Rewrites the store with only its most recently used blames, up to half of its cap.
+   * The records failing their checksum are left out.
+   * @throws IOException if the store cannot be rewritten.
+   */
+  public void compact() throws IOException {
+    lock.writeLock().lock();
+    try {
+      var entries = new ArrayList<>(index.entrySet());
+      entries.sort(Comparator.comparingLong((Map.Entry<Key, Slot> entry) -> entry.getValue().lastUse).reversed());
+      var kept = new ArrayList<ByteBuffer>();
+      var keptBytes = (long) HEADER_BYTES;
+      for (var entry : entries) {
+        var record = record(entry.getValue().offset);
+        if (record == null) {
+          continue;
+        }
+        if (keptBytes + record.remaining() > maxBytes / 2) {
+          break;
+        }
+        keptBytes += record.remaining();
+        kept.add(record);
+      }
+      var temporary = dataFile.resolveSibling(DATA_FILE + ".tmp");
+      try (var output = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        var header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).flip();
+        var position = 0L;
+        while (header.hasRemaining()) {
+          position += output.write(header, position);
+        }
+        for (var i = kept.size() - 1; i >= 0; i--) {
+          var record = kept.get(i);
+          while (record.hasRemaining()) {
+            position += output.write(record, position);
+          }
+        }
+        output.force(true);
+      }
+      close();
+      Files.move(temporary, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      index.clear();
+      open();
+      compactionCount++;
+      logger.info("Compacted the blame store to {} blames, {} bytes", index.size(), sizeBytes);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+
+  public int entryCount() {
+    return index.size();
+  }
+
+
+  public long sizeBytes() {
+    lock.readLock().lock();
+    try {
+      return sizeBytes;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+
+  public long maxBytes() {
+    return maxBytes;
+  }
+
+
+  public long hitCount() {
+    return hitCount.get();
+  }
+
+
+  public long missCount() {
+    return missCount.get();
+  }
+
+
+  public long compactionCount() {
+    lock.readLock().lock();
+    try {
+      return compactionCount;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+
+  @PreDestroy
+  @Override
+  public void close() throws IOException {
+    lock.writeLock().lock();
+    try {
+      mapped = null;
+      if (channel != null) {
+        channel.close();
+        channel = null;
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+
+  /**
+   * Opens the store file and indexes its records, dropping the records failing their checksum and a record
+   * left truncated by a crash. A file written in another format is emptied.
+   * @throws IOException if the store cannot be read.
+   */
+  private void open() throws IOException {
+    channel = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    sizeBytes = channel.size();
+    var header = ByteBuffer.allocate(HEADER_BYTES);
+    channel.read(header, 0);
+    if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+      if (sizeBytes > 0) {
+        logger.warn("Emptying the blame store {}, written in another format", dataFile);
+      }
+      channel.truncate(0);
+      header.clear().putInt(MAGIC).flip();
+      while (header.hasRemaining()) {
+        channel.write(header, header.position());
+      }
+      sizeBytes = HEADER_BYTES;
+    }
+    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, sizeBytes);
+    var offset = (long) HEADER_BYTES;
+    var dropped = 0;
+    while (offset + RECORD_HEADER_BYTES + KEY_BYTES <= sizeBytes) {
+      var length = mapped.getInt((int) offset);
+      if (length < KEY_BYTES || offset + RECORD_HEADER_BYTES + length > sizeBytes) {
+        break;
+      }
+      var payload = payload(offset);
+      if (payload == null) {
+        dropped++;
+      } else {
+        index.put(new Key(readId(payload), readId(payload)), new Slot(offset, clock.incrementAndGet()));
+      }
+      offset += RECORD_HEADER_BYTES + length;
+    }
+    if (dropped > 0) {
+      logger.warn("Dropping {} corrupted blames of the blame store", dropped);
+    }
+    if (offset < sizeBytes) {
+      logger.warn("Dropping {} unreadable bytes at the end of the blame store", sizeBytes - offset);
+      channel.truncate(offset);
+      sizeBytes = offset;
+    }
+  }
+
+
+  /**
+   * Returns the record at an offset, its header included, or null if it lies outside of the file
+   * or fails its checksum.
+   */
+  private ByteBuffer record(long offset) throws IOException {
+    if (offset < HEADER_BYTES || offset + RECORD_HEADER_BYTES > sizeBytes) {
+      return null;
+    }
+    var length = mapping(offset + RECORD_HEADER_BYTES).getInt((int) offset);
+    if (length < KEY_BYTES || offset + RECORD_HEADER_BYTES + length > sizeBytes) {
+      return null;
+    }
+    var record = mapping(offset + RECORD_HEADER_BYTES + length).slice((int) offset, RECORD_HEADER_BYTES + length);
+    return checksum(record.slice(RECORD_HEADER_BYTES, length)) == record.getInt(Integer.BYTES) ? record : null;
+  }
+
+
+  /**
+   * Returns the payload of the record at an offset, or null if the record lies outside of the file
+   * or fails its checksum.
+   */
+  private ByteBuffer payload(long offset) throws IOException {
+    var record = record(offset);
+    return record == null ? null : record.slice(RECORD_HEADER_BYTES, record.remaining() - RECORD_HEADER_BYTES);
+  }
+
+
+  /**
+   * Returns a mapping of the file covering an end offset, mapping the file again if it grew since the last mapping.
+   * The readers holding the read lock may map it concurrently, the mapping is only replaced by a larger one.
+   */
+  private MappedByteBuffer mapping(long end) throws IOException {
+    var current = mapped;
+    if (current.capacity() >= end) {
+      return current;
+    }
+    synchronized (mappingLock) {
+      if (mapped.capacity() < end) {
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, sizeBytes);
+      }
+      return mapped;
+    }
+  }
+
+
+  private static int checksum(ByteBuffer payload) {
+    var crc = new CRC32();
+    crc.update(payload.duplicate());
+    return (int) crc.getValue();
+  }
+
+
+  private static ByteBuffer encode(Key key, Authors authors) {
+    var ranges = new ArrayList<int[]>();
+    for (var author : authors.lines()) {
+      if (!ranges.isEmpty() && ranges.getLast()[1] == author) {
+        ranges.getLast()[0]++;
+      } else {
+        ranges.add(new int[] {1, author});
+      }
+    }
+    var strings = new ArrayList<byte[]>();
+    var length = KEY_BYTES + Integer.BYTES + Integer.BYTES + ranges.size() * 2 * Integer.BYTES;
+    for (var i = 0; i < authors.names().size(); i++) {
+      var name = authors.names().get(i).getBytes(StandardCharsets.UTF_8);
+      var email = authors.emails().get(i).getBytes(StandardCharsets.UTF_8);
+      strings.add(name);
+      strings.add(email);
+      length += 2 * Integer.BYTES + name.length + email.length;
+    }
+    var buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + length).putInt(length).putInt(0);
+    key.blobId().copyRawTo(buffer);
+    key.commitId().copyRawTo(buffer);
+    buffer.putInt(strings.size() / 2);
+    for (var bytes : strings) {
+      buffer.putInt(bytes.length).put(bytes);
+    }
+    buffer.putInt(ranges.size());
+    for (var range : ranges) {
+      buffer.putInt(range[0]).putInt(range[1]);
+    }
+    buffer.flip();
+    return buffer.putInt(Integer.BYTES, checksum(buffer.slice(RECORD_HEADER_BYTES, length)));
+  }
+
+
+  /**
+   * Decodes the payload of a record.
+   * @throws IllegalArgumentException if the payload is inconsistent.
+   */
+  private static Authors decode(ByteBuffer payload) {
+    payload.position(KEY_BYTES);
+    var count = payload.getInt();
+    if (count < 0 || count > payload.remaining() / (2 * Integer.BYTES)) {
+      throw new IllegalArgumentException("invalid number of authors " + count);
+    }
+    var names = new ArrayList<String>(count);
+    var emails = new ArrayList<String>(count);
+    for (var i = 0; i < count; i++) {
+      names.add(readString(payload));
+      emails.add(readString(payload));
+    }
+    var ranges = payload.getInt();
+    if (ranges < 0 || 2L * Integer.BYTES * ranges != payload.remaining()) {
+      throw new IllegalArgumentException("invalid number of ranges " + ranges);
+    }
+    var lines = 0L;
+    for (var i = 0; i < ranges; i++) {
+      var length = payload.getInt(payload.position() + 2 * Integer.BYTES * i);
+      if (length <= 0) {
+        throw new IllegalArgumentException("invalid range of " + length + " lines");
+      }
+      lines += length;
+    }
+    if (lines > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("invalid number of lines " + lines);
+    }
+    var authors = new int[(int) lines];
+    var line = 0;
+    for (var i = 0; i < ranges; i++) {
+      var length = payload.getInt();
+      var author = payload.getInt();
+      if (author < NO_AUTHOR || author >= count) {
+        throw new IllegalArgumentException("invalid author " + author);
+      }
+      Arrays.fill(authors, line, line + length, author);
+      line += length;
+    }
+    return new Authors(names, emails, authors);
+  }
+
+
+  private static ObjectId readId(ByteBuffer payload) {
+    var raw = new byte[Constants.OBJECT_ID_LENGTH];
+    payload.get(raw);
+    return ObjectId.fromRaw(raw);
+  }
+
+
+  private static String readString(ByteBuffer payload) {
+    var length = payload.getInt();
+    if (length < 0 || length > payload.remaining()) {
+      throw new IllegalArgumentException("invalid string length " + length);
+    }
+    var bytes = new byte[length];
+    payload.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
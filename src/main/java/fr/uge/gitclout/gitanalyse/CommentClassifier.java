@@ -0,0 +1,170 @@
+package fr.uge.gitclout.gitanalyse;
+
+import org.eclipse.jgit.diff.RawText;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * This class finds the lines of code of a file, as opposed to its blank lines and comments.
+ * It scans the bytes of the file once, from its first line, so that a multi-line comment is followed
+ * across the lines it spans, without creating a String for any line.
+ * A line is code if it holds anything outside of a comment; the content of a string literal is not searched for comments.
+ * Several delimiters separated by '|' in a LanguageName are alternatives; an end without a matching start
+ * is also its own start, like the quotes of Python docstrings.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public final class CommentClassifier {
+
+  private static final int NO_COMMENT = -1;
+  private static final Map<LanguageName, CommentClassifier> CLASSIFIERS = new EnumMap<>(LanguageName.class);
+
+  static {
+    for (var language : LanguageName.values()) {
+      CLASSIFIERS.put(language, new CommentClassifier(language));
+    }
+  }
+
+  private final byte[] singleLine;
+  private final byte[][] blockStarts;
+  private final byte[][] blockEnds;
+
+  private CommentClassifier(LanguageName language) {
+    this(language.getSingleLineCommentRegex(), language.getMultiLineCommentStart(), language.getMultiLineCommentEnd());
+  }
+
+
+  /**
+   * Constructs a new CommentClassifier for a comment syntax, an empty delimiter meaning the comment does not exist.
+   * @param singleLine the start of a single-line comment.
+   * @param blockStart the starts of a multi-line comment, separated by '|'.
+   * @param blockEnd the ends of a multi-line comment, separated by '|'.
+   */
+  public CommentClassifier(String singleLine, String blockStart, String blockEnd) {
+    Objects.requireNonNull(singleLine);
+    this.singleLine = singleLine.isEmpty() ? null : singleLine.getBytes(StandardCharsets.UTF_8);
+    var starts = split(Objects.requireNonNull(blockStart));
+    var ends = split(Objects.requireNonNull(blockEnd));
+    if (starts.length == 0 || ends.length == 0) {
+      starts = new byte[0][];
+      ends = new byte[0][];
+    } else if (starts.length < ends.length) {
+      var pairedStarts = Arrays.copyOf(starts, ends.length);
+      for (var i = starts.length; i < ends.length; i++) {
+        pairedStarts[i] = ends[i];
+      }
+      starts = pairedStarts;
+    }
+    this.blockStarts = starts;
+    this.blockEnds = Arrays.copyOf(ends, starts.length);
+  }
+
+
+  /**
+   * Returns the classifier of the default comment syntax of a language.
+   * @param language the language of the files to classify.
+   * @return the classifier of the language.
+   */
+  public static CommentClassifier of(LanguageName language) {
+    return CLASSIFIERS.get(Objects.requireNonNull(language));
+  }
+
+
+  /**
+   * Finds the lines of code of a file.
+   * @param contents the content of the file.
+   * @return the set of the indexes, starting at 0, of the lines of code.
+   */
+  public BitSet codeLines(RawText contents) {
+    return codeLines(Objects.requireNonNull(contents).getRawContent());
+  }
+
+
+  /**
+   * Finds the lines of code of a file, the lines being separated by '\n'.
+   * @param raw the bytes of the file.
+   * @return the set of the indexes, starting at 0, of the lines of code.
+   */
+  public BitSet codeLines(byte[] raw) {
+    Objects.requireNonNull(raw);
+    var codeLines = new BitSet();
+    var comment = NO_COMMENT;
+    var line = 0;
+    var start = 0;
+    while (start < raw.length) {
+      var end = start;
+      while (end < raw.length && raw[end] != '\n') {
+        end++;
+      }
+      var code = false;
+      var inString = false;
+      var position = start;
+      scan:
+      while (position < end) {
+        if (comment != NO_COMMENT) {
+          if (matches(raw, position, end, blockEnds[comment])) {
+            position += blockEnds[comment].length;
+            comment = NO_COMMENT;
+          } else {
+            position++;
+          }
+          continue;
+        }
+        var current = raw[position];
+        if (inString) {
+          if (current == '\\') {
+            position += 2;
+            continue;
+          }
+          inString = current != '"';
+          position++;
+          continue;
+        }
+        if (current >= 0 && current <= ' ') {
+          position++;
+          continue;
+        }
+        for (var i = 0; i < blockStarts.length; i++) {
+          if (matches(raw, position, end, blockStarts[i])) {
+            comment = i;
+            position += blockStarts[i].length;
+            continue scan;
+          }
+        }
+        if (singleLine != null && matches(raw, position, end, singleLine)) {
+          break;
+        }
+        code = true;
+        inString = current == '"';
+        position++;
+      }
+      if (code) {
+        codeLines.set(line);
+      }
+      line++;
+      start = end + 1;
+    }
+    return codeLines;
+  }
+
+
+  private static boolean matches(byte[] raw, int position, int end, byte[] delimiter) {
+    return end - position >= delimiter.length
+            && Arrays.equals(raw, position, position + delimiter.length, delimiter, 0, delimiter.length);
+  }
+
+
+  private static byte[][] split(String delimiters) {
+    if (delimiters.isEmpty()) {
+      return new byte[0][];
+    }
+    return Arrays.stream(delimiters.split("\\|"))
+            .map(delimiter -> delimiter.getBytes(StandardCharsets.UTF_8))
+            .toArray(byte[][]::new);
+  }
+}
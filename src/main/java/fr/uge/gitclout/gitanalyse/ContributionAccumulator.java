@@ -0,0 +1,134 @@
+package fr.uge.gitclout.gitanalyse;
+
+import fr.uge.gitclout.database.Contribution;
+import fr.uge.gitclout.database.Tag;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * This class accumulates the lines of each contributor in each language for one tag interval.
+ * The counters are laid out flat, one row of LanguageName ordinals per contributor id. The tasks of the interval
+ * count in their own Tally without any synchronization or allocation per line, and merge it once when they are done.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+final class ContributionAccumulator {
+
+  private static final LanguageName[] LANGUAGES = LanguageName.values();
+
+  private final ContributorDictionary dictionary;
+  private final Tally total = new Tally();
+
+  /**
+   * Constructs a new ContributionAccumulator.
+   * @param dictionary the dictionary giving the ids of the contributors.
+   */
+  ContributionAccumulator(ContributorDictionary dictionary) {
+    this.dictionary = Objects.requireNonNull(dictionary);
+  }
+
+
+  /**
+   * Returns a new Tally, the counters of one task.
+   * @return a new Tally.
+   */
+  Tally tally() {
+    return new Tally();
+  }
+
+
+  /**
+   * Adds the counters of a task to the ones of the interval.
+   * @param tally the counters of the task.
+   */
+  synchronized void merge(Tally tally) {
+    Objects.requireNonNull(tally);
+    if (total.counts.length < tally.counts.length) {
+      total.counts = Arrays.copyOf(total.counts, tally.counts.length);
+    }
+    for (var i = 0; i < tally.counts.length; i++) {
+      total.counts[i] += tally.counts[i];
+    }
+    total.present.or(tally.present);
+  }
+
+
+  /**
+   * Turns the counters into Contribution objects, ordered by contributor name.
+   * A contributor met without any line of code, for instance as the author of deleted lines, gets an empty contribution.
+   *
+   * @param tag the tag the contributions belong to.
+   * @return a list of Contribution objects.
+   */
+  synchronized List<Contribution> toContributions(Tag tag) {
+    var ids = total.present.stream().boxed().sorted(Comparator.comparing(dictionary::name)).toList();
+    var contributions = new ArrayList<Contribution>(ids.size());
+    for (var id : ids) {
+      var languages = new HashMap<LanguageName, Integer>();
+      for (var language : LANGUAGES) {
+        var count = total.count(id, language);
+        if (count > 0) {
+          languages.put(language, count);
+        }
+      }
+      contributions.add(new Contribution(dictionary.toContributor(id), tag, languages));
+    }
+    return contributions;
+  }
+
+
+  /**
+   * This class holds the counters of one task. It is not thread-safe.
+   */
+  static final class Tally {
+
+    private int[] counts = new int[0];
+    private final BitSet present = new BitSet();
+
+    private Tally() {
+    }
+
+
+    /**
+     * Records a contributor without counting any line.
+     * @param contributor the id of the contributor.
+     */
+    void touch(int contributor) {
+      present.set(contributor);
+    }
+
+
+    /**
+     * Counts lines of a contributor in a language.
+     *
+     * @param contributor the id of the contributor.
+     * @param language the language of the lines.
+     * @param lines the number of lines.
+     */
+    void add(int contributor, LanguageName language, int lines) {
+      ensureCapacity(contributor + 1);
+      counts[contributor * LANGUAGES.length + language.ordinal()] += lines;
+      present.set(contributor);
+    }
+
+
+    private int count(int contributor, LanguageName language) {
+      var index = contributor * LANGUAGES.length + language.ordinal();
+      return index < counts.length ? counts[index] : 0;
+    }
+
+
+    private void ensureCapacity(int contributors) {
+      var length = contributors * LANGUAGES.length;
+      if (counts.length < length) {
+        counts = Arrays.copyOf(counts, Math.max(length, 2 * counts.length));
+      }
+    }
+  }
+}
@@ -1,55 +1,99 @@
 package fr.uge.gitclout.gitanalyse;
 
-import fr.uge.gitclout.api.ProgressWebSocket;
 import fr.uge.gitclout.database.Contribution;
-import fr.uge.gitclout.database.Contributor;
 import fr.uge.gitclout.database.Tag;
-import org.eclipse.jgit.api.BlameCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.blame.BlameGenerator;
 import org.eclipse.jgit.blame.BlameResult;
 import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.diff.DiffFormatter;
 import org.eclipse.jgit.diff.Edit;
 import org.eclipse.jgit.diff.EditList;
-import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.util.io.DisabledOutputStream;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import static org.eclipse.jgit.diff.Edit.Type.*;
 
 /**
  * ContributionAnalyzer class for analyzing contributions in a Git repository.
+ * Its readers, diff formatters and revision walks are shared by the tasks of an analysis session, released when it is closed.
  * @author Tagnan Tremellat
  * @version 1.0
  */
-public class ContributionAnalyzer {
+public class ContributionAnalyzer implements AutoCloseable {
   
-  private final ConcurrentMap<String, BlameResult> blameResultCache = new ConcurrentHashMap<>();
-  private final ConcurrentMap<Contributor, ConcurrentMap<LanguageName, Integer>> contributions = new ConcurrentHashMap<>();
-  private final ProgressWebSocket progressWebSocket;
-  private final LinkedHashSet<Integer> insertLines = new LinkedHashSet<>();
-  private final LinkedHashSet<Integer> deleteLines = new LinkedHashSet<>();
-  private final ExecutorService executorService;
+  private static final Logger logger = LoggerFactory.getLogger(ContributionAnalyzer.class);
+  private static final int MIN_INTERVALS_PER_RUN = 8;
+
+  private final BlameCache blameResultCache;
+  private final BlameStore blameStore;
+  private final AttributionMode attributionMode;
+  private final ProgressListener progressListener;
+  private final IncrementalBlame incrementalBlame;
+  private final AnalysisScheduler.Lane lane;
+  private volatile boolean cancelled;
   private final GitAnalysisService gitAnalysisService ;
   private final Git git;
+  private final Object progressLock = new Object();
+  private final ContributorDictionary contributorDictionary;
+  private final BlameFilter blameFilter;
+  private final LanguageRegistry languageRegistry;
+  private final RenameDetection renameDetection;
+  private final AnalysisSession session;
+  private final ConcurrentMap<String, LanguageName> languageByPath = new ConcurrentHashMap<>();
+  private final Map<SkipReason, LongAdder> skippedFiles = new EnumMap<>(SkipReason.class);
+
+  /**
+   * The state of the analysis of one tag interval: the contributions found in it,
+   * and the incremental blame carried along the run of intervals it belongs to.
+   */
+  private record Interval(IncrementalBlame incrementalBlame, ContributionAccumulator accumulator) {}
   
   /**
-   * Constructs a new ContributionAnalyzer with the specified Git repository and progressWebSocket.
-   * @param progressWebSocket The progressWebSocket to update the progress of the analysis.
+   * Constructs a new ContributionAnalyzer with the specified Git repository, progress listener and settings.
+   * @param progressListener The listener of the progress of the analysis, or null.
    * @param git The Git object representing the repository to analyze.
    * @param gitAnalysisService The GitAnalysisService object to use for Git operations.
+   * @param options The settings of the analysis, and the lane running its tasks.
    */
-  public ContributionAnalyzer(ProgressWebSocket progressWebSocket,  Git git, GitAnalysisService gitAnalysisService) {
+  public ContributionAnalyzer(ProgressListener progressListener, Git git, GitAnalysisService gitAnalysisService, AnalysisOptions options) {
+    Objects.requireNonNull(options);
+    this.renameDetection = options.renameDetection();
+    this.session = new AnalysisSession(git.getRepository(), renameDetection);
+    var blameStore = renameDetection.followInBlame() ? options.blameStore() : null;
+    this.blameFilter = options.blameFilter();
+    this.languageRegistry = options.languageRegistry();
+    for (var reason : SkipReason.values()) {
+      skippedFiles.put(reason, new LongAdder());
+    }
+    this.attributionMode = options.attributionMode();
+    this.blameResultCache = options.blameCache();
+    this.blameStore = blameStore;
     this.git = git;
-    this.progressWebSocket = progressWebSocket;
+    this.progressListener = progressListener;
     this.gitAnalysisService = gitAnalysisService;
-    this.executorService = Executors.newFixedThreadPool(5);
+    this.contributorDictionary = gitAnalysisService.contributorDictionary();
+    this.incrementalBlame = new IncrementalBlame(session, blameStore, contributorDictionary);
+    this.lane = options.lane();
   }
 
 
@@ -59,18 +103,144 @@ public class ContributionAnalyzer {
    * @param tags A List of tags for which contributions are to be analyzed.
    */
   List<Contribution> analyzeContributionsForTags(List<Tag> tags) throws IOException {
-    int tagProgress = 0;
-    List<Contribution> allContributions = new ArrayList<>();
-    if (!tags.isEmpty()) {
-      allContributions.addAll(analyzeContributionForTag(tags.get(0)));
-      progressWebSocket.updateProgress(++tagProgress, tags.size());
+    return collect(tags);
+  }
+
+
+  /**
+   * Analyzes all contributions by tag, handing the contributions of each interval to a sink as soon as they are computed,
+   * so that they are not kept in memory until the end of the analysis.
+   * @param tags A List of tags for which contributions are to be analyzed.
+   * @param sink The sink receiving the contributions of each interval.
+   * @throws IOException if an interval cannot be analyzed or the sink fails.
+   */
+  void analyzeContributionsForTags(List<Tag> tags, ContributionSink sink) throws IOException {
+    analyzeIntervals(tags, true, sink);
+    logger.info("Blame cache after analysis: {}", blameResultCache);
+    logger.info("Files skipped by the analysis: {}", getSkippedFiles());
+  }
+
+
+  /**
+   * Analyzes the intervals of the tags and collects their contributions in the order of the history.
+   *
+   * @param tags The tags to analyze, the first one included.
+   * @return the contributions of every interval, in the order of the history.
+   * @throws IOException if an interval cannot be analyzed.
+   */
+  private List<Contribution> collect(List<Tag> tags) throws IOException {
+    var results = Collections.synchronizedList(new ArrayList<List<Contribution>>());
+    analyzeIntervals(tags, true, results::add);
+    logger.info("Blame cache after analysis: {}", blameResultCache);
+    logger.info("Files skipped by the analysis: {}", getSkippedFiles());
+    var tagIndex = gitAnalysisService.tagIndex();
+    var allContributions = new ArrayList<Contribution>();
+    results.stream()
+            .filter(result -> !result.isEmpty())
+            .sorted(Comparator.comparingInt(result -> tagIndex.position(result.getFirst().getTag().getName())))
+            .forEach(allContributions::addAll);
+    return allContributions;
+  }
+
+
+  /**
+   * Returns the number of files left out of the analysis so far, for each reason.
+   * A file is counted once for every interval it changes in, or for every commit changing it in the DIFF mode.
+   * @return the number of skipped files by reason.
+   */
+  public Map<SkipReason, Long> getSkippedFiles() {
+    var result = new EnumMap<SkipReason, Long>(SkipReason.class);
+    skippedFiles.forEach((reason, count) -> result.put(reason, count.sum()));
+    return result;
+  }
+
+
+  /**
+   * Analyzes the interval between each tag and its base, the nearest of the given tags in its history.
+   * The tags are sorted by history, so that the base of a tag is usually the tag analyzed just before it.
+   * A tag without base is analyzed from its whole content, unless the first tag is only given as a starting point:
+   * then the other tags are already analyzed, and the nearest of them in its history is taken.
+   * The intervals are split into contiguous runs analyzed concurrently, each run carrying its own incremental blame
+   * from one tag to the next, so that a run only pays a full blame for its first interval. The contributions of
+   * each interval are handed to the sink as soon as it completes, and the progress is reported at the same time.
+   *
+   * @param tags         The tags to analyze.
+   * @param withFirstTag A boolean indicating whether the first tag is analyzed too, or only used as a starting point.
+   * @param sink         The sink receiving the contributions of each interval.
+   * @throws IOException if an interval cannot be analyzed or the sink fails.
+   */
+  private void analyzeIntervals(List<Tag> tags, boolean withFirstTag, ContributionSink sink) throws IOException {
+    Objects.requireNonNull(sink);
+    if (tags.isEmpty()) {
+      return;
     }
-    for (var i = 0; i < tags.size() - 1; i++) {
-      allContributions.addAll(analyzeContributionForTags(tags.get(i), tags.get(i + 1)));
-      progressWebSocket.updateProgress(++tagProgress, tags.size());
+    var tagIndex = gitAnalysisService.tagIndex();
+    var tagsByName = new HashMap<String, Tag>();
+    for (var tag : tags) {
+      tagsByName.put(tag.getName(), tag);
+    }
+    var ordered = new ArrayList<>(withFirstTag ? tags : tags.subList(1, tags.size()));
+    ordered.sort(Comparator.comparingInt(tag -> tagIndex.position(tag.getName())));
+    var bases = new ArrayList<Tag>();
+    for (var tag : ordered) {
+      var base = tagIndex.baseAmong(tag.getName(), tagsByName.keySet());
+      if (base == null && !withFirstTag) {
+        var entry = tagIndex.get(tag.getName());
+        base = entry == null ? null : entry.base();
+      }
+      bases.add(base == null ? null : tagsByName.getOrDefault(base, new Tag(base)));
+    }
+    var count = ordered.size();
+    if (count == 0) {
+      return;
+    }
+    var runs = Math.max(1, Math.min(lane.maxConcurrency(), count / MIN_INTERVALS_PER_RUN));
+    var done = new AtomicInteger();
+    var tasks = new ArrayList<Callable<Integer>>();
+    for (var run = 0; run < runs; run++) {
+      var from = run * count / runs;
+      var to = (run + 1) * count / runs;
+      var runBlame = run == 0 ? incrementalBlame : new IncrementalBlame(session, blameStore, contributorDictionary);
+      tasks.add(() -> {
+        for (var i = from; i < to; i++) {
+          checkCancelled();
+          sink.accept(bases.get(i) == null
+                  ? analyzeContributionForTag(ordered.get(i), newInterval(runBlame))
+                  : analyzeContributionForTags(bases.get(i), ordered.get(i), newInterval(runBlame)));
+          reportProgress(done, count);
+        }
+        return to - from;
+      });
+    }
+    try {
+      for (var future : lane.split(tasks)) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while analyzing the tags", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException ioException) {
+        throw ioException;
+      }
+      throw new IOException("Failed to analyze the tags", e.getCause());
+    }
+  }
+
+
+  /**
+   * Reports one more analyzed interval, the reports being sent in increasing order even when intervals complete concurrently.
+   *
+   * @param done  The number of intervals analyzed so far.
+   * @param total The number of intervals to analyze.
+   */
+  private void reportProgress(AtomicInteger done, int total) {
+    if (progressListener == null) {
+      return;
+    }
+    synchronized (progressLock) {
+      progressListener.updateProgress(done.incrementAndGet(), total);
     }
-    executorService.shutdown();
-    return allContributions;
   }
   
   
@@ -79,43 +249,75 @@ public class ContributionAnalyzer {
    *
    * @param tag  The first tag associated with the diffs.
    * @param tag2 The second tag associated with the diffs.
+   * @param commit2 The commit the second tag points to.
    * @param diff The list of DiffEntry objects representing changes between commits.
+   * @param interval The state of the analysis of the interval.
    * @return A list of Contribution objects.
    */
-  private List<Contribution> processDiffs(Tag tag, Tag tag2, List<DiffEntry> diff) throws  IOException {
+  private List<Contribution> processDiffs(Tag tag, Tag tag2, RevCommit commit2, List<DiffEntry> diff, Interval interval) throws  IOException {
     try{
-      var contributionList = new ArrayList<Contribution>();
-      analyzeContributions(diff, tag, tag2);
-      for (var entry : contributions.entrySet()) {
-        Contribution contribution = new Contribution(entry.getKey(), tag2, entry.getValue());
-        contributionList.add(contribution);
-      }
-      contributions.clear();
-      return contributionList;
+      analyzeContributions(diff, tag, commit2, interval);
+      return collectContributions(tag2, interval);
     }catch (GitAPIException | InterruptedException | ExecutionException e) {
       throw new IOException("Failed to process diffs", e);
     }
   }
 
+
+  /**
+   * Starts the analysis of an interval.
+   *
+   * @param incrementalBlame The incremental blame of the run of intervals.
+   * @return The state of the analysis of the interval, without any contribution yet.
+   */
+  private Interval newInterval(IncrementalBlame incrementalBlame) {
+    return new Interval(incrementalBlame, new ContributionAccumulator(contributorDictionary));
+  }
+
+
+  /**
+   * Turns the contributions accumulated for an interval into Contribution objects.
+   *
+   * @param tag The tag the contributions belong to.
+   * @param interval The state of the analysis of the interval.
+   * @return A list of Contribution objects.
+   */
+  private List<Contribution> collectContributions(Tag tag, Interval interval) {
+    return interval.accumulator().toContributions(tag);
+  }
+
   
   /**
-   * Analyzes a single contribution for a given tag and commit.
-   * This is used to analyze changes in each commit associated with a specific tag.
-   * @param tag The tag to analyze the contribution for.
-   * @param tag2 The commit to analyze the contribution in.
+   * Analyzes the contributions of the interval between two tags.
+   * @param tag The base of the interval.
+   * @param tag2 The tag ending the interval, which the contributions belong to.
+   * @param interval The state of the analysis of the interval.
+   * @return A list of Contribution objects.
    */
-  private List<Contribution> analyzeContributionForTags(Tag tag, Tag tag2) throws IOException {
+  private List<Contribution> analyzeContributionForTags(Tag tag, Tag tag2, Interval interval) throws IOException {
     RevCommit commit = gitAnalysisService.resolveTagToCommit(tag.getName());
     RevCommit commit2 = gitAnalysisService.resolveTagToCommit(tag2.getName());
-    List<DiffEntry> diffs = gitAnalysisService.getDiffBetweenCommits(commit, commit2);
-    return processDiffs(tag, tag2, diffs);
+    if (attributionMode == AttributionMode.DIFF) {
+      return attributeCommits(commit, commit2, tag2, interval);
+    }
+    List<DiffEntry> diffs;
+    try (var handle = session.acquire()) {
+      diffs = gitAnalysisService.getDiffBetweenCommits(commit, commit2, handle);
+    }
+    return processDiffs(tag, tag2, commit2, diffs, interval);
   }
   
   
-  private List<Contribution> analyzeContributionForTag(Tag tag) throws IOException {
+  private List<Contribution> analyzeContributionForTag(Tag tag, Interval interval) throws IOException {
     RevCommit commit = gitAnalysisService.resolveTagToCommit(tag.getName());
-    var diffEntry = gitAnalysisService.getDiffBetweenEmptyTreeAndCommit(commit);
-    return processDiffs(null, tag, diffEntry);
+    if (attributionMode == AttributionMode.DIFF) {
+      return attributeCommits(null, commit, tag, interval);
+    }
+    List<DiffEntry> diffEntry;
+    try (var handle = session.acquire()) {
+      diffEntry = gitAnalysisService.getDiffBetweenEmptyTreeAndCommit(commit, handle);
+    }
+    return processDiffs(null, tag, commit, diffEntry, interval);
   }
 
 
@@ -125,27 +327,36 @@ public class ContributionAnalyzer {
    *
    * @param diffs   The list of DiffEntry objects representing changes between commits.
    * @param oldTag  The old tag associated with the diffs.
-   * @param newTag  The new tag associated with the diffs.
+   * @param newCommit The commit the new tag points to.
+   * @param interval The state of the analysis of the interval.
    * @throws GitAPIException if an error occurs during the analysis.
    */
-  private void analyzeContributions(List<DiffEntry> diffs, Tag oldTag, Tag newTag) throws GitAPIException, InterruptedException, ExecutionException {
+  private void analyzeContributions(List<DiffEntry> diffs, Tag oldTag, RevCommit newCommit, Interval interval) throws GitAPIException, IOException, InterruptedException, ExecutionException {
+    var newPaths = diffs.stream().filter(diff -> diff.getChangeType() != DiffEntry.ChangeType.DELETE).map(DiffEntry::getNewPath).toList();
+    var markedPaths = blameFilter.markedPaths(git.getRepository(), newCommit, newPaths);
     var futureList = new ArrayList<Callable<Integer>>();
     for (DiffEntry diff : diffs) {
       futureList.add(() -> {
-        var fileType = recognizeLanguage(diff.getNewPath());
-        EditList editList = editDiffs(diff);
-        processEdits(editList);
+        checkCancelled();
+        LanguageName fileType;
+        EditList editList;
+        try (var handle = session.acquire()) {
+          if (isSkipped(handle.reader(), diff, markedPaths)) {
+            interval.incrementalBlame().forget(diff.getOldPath());
+            return 0;
+          }
+          fileType = recognizeLanguage(handle.reader(), diff);
+          editList = editDiffs(diff, handle);
+        }
         switch (diff.getChangeType()) {
-          case DELETE -> analyzeFileChange(diff, oldTag, null, fileType);
-          case MODIFY -> analyzeFileChange(diff, oldTag, newTag, fileType);
-          default -> analyzeFileChange(diff, null, newTag, fileType);
+          case DELETE -> analyzeFileChange(diff, editList, oldTag, null, fileType, interval);
+          case ADD -> analyzeFileChange(diff, editList, null, newCommit, fileType, interval);
+          default -> analyzeFileChange(diff, editList, oldTag, newCommit, fileType, interval);
         }
         return 1;
       });
     }
-    insertLines.clear();
-    deleteLines.clear();
-    var future = executorService.invokeAll(futureList);
+    var future = lane.invokeAll(futureList);
     for (var f : future) {
       f.get();
     }
@@ -153,298 +364,301 @@ public class ContributionAnalyzer {
 
 
   /**
-   * Analyzes the file changes in a Git repository between two commits for a specific file type.
+   * Checks if the file of a diff is left out of the analysis, and counts it if so.
+   * A deleted file is checked on its old side, any other file on its new side.
    *
-   * @param diff         The DiffEntry representing the file changes.
-   * @param oldTagOpt    An Optional containing the old tag associated with the file changes.
-   * @param newTagOpt    An Optional containing the new tag associated with the file changes.
-   * @param fileType     The type of the file being analyzed.
-   * @throws GitAPIException if there is an error during Git operations.
-   * @throws IOException     if there is an I/O error.
+   * @param reader      The reader of the repository.
+   * @param diff        The DiffEntry representing the file changes.
+   * @param markedPaths The paths marked generated or vendored by the .gitattributes.
+   * @return true if the file is skipped.
+   * @throws IOException if the blob of the file cannot be read.
    */
-  private void analyzeFileChange(DiffEntry diff, Tag oldTagOpt, Tag newTagOpt, LanguageName fileType) throws GitAPIException, IOException {
-    if (oldTagOpt != null) {
-      BlameResult blameResultOld = getBlameResult(diff.getOldPath(), oldTagOpt);
-      analyzeContributionsForBlameResult(blameResultOld, fileType, true);
-    }
-    if (newTagOpt != null) {
-      BlameResult blameResultNew = getBlameResult(diff.getNewPath(), newTagOpt);
-      analyzeContributionsForBlameResult(blameResultNew, fileType, false);
+  private boolean isSkipped(ObjectReader reader, DiffEntry diff, Map<String, SkipReason> markedPaths) throws IOException {
+    var deleted = diff.getChangeType() == DiffEntry.ChangeType.DELETE;
+    var reason = blameFilter.check(reader, deleted ? diff.getOldPath() : diff.getNewPath(),
+            deleted ? diff.getOldId().toObjectId() : diff.getNewId().toObjectId(), markedPaths);
+    if (reason == null) {
+      return false;
     }
+    skippedFiles.get(reason).increment();
+    return true;
   }
 
-  
+
   /**
-   * Analyzes contributions based on the blame result of a file.
+   * Attributes the lines inserted by each commit between two tags to the author of that commit,
+   * without blaming any file. Merge commits are skipped, their lines are credited to the commits they merge.
+   * The files are filtered like the blamed ones, the .gitattributes being read at the new tag.
    *
-   * @param blameResult  The BlameResult object containing information about file changes.
-   * @param fileType     The type of the file being analyzed.
-   * @param isDelete     A boolean indicating whether the file change is a deletion.
+   * @param oldCommit The commit of the old tag, excluded with its history, or null to take the whole history.
+   * @param newCommit The commit of the new tag.
+   * @param newTag    The new tag, which receives the contributions.
+   * @param interval  The state of the analysis of the interval.
+   * @return A list of Contribution objects.
+   * @throws IOException if the history cannot be read.
    */
-  private void analyzeContributionsForBlameResult(BlameResult blameResult, LanguageName fileType, boolean isDelete) {
-    if (blameResult == null) {
-      return;
+  private List<Contribution> attributeCommits(RevCommit oldCommit, RevCommit newCommit, Tag newTag, Interval interval) throws IOException {
+    var markedPaths = blameFilter.markedPaths(git.getRepository(), newCommit, null);
+    var tasks = new ArrayList<Callable<Map<LanguageName, Integer>>>();
+    var authors = new ArrayList<Integer>();
+    try (var handle = session.acquire(); var revWalk = new RevWalk(handle.reader())) {
+      revWalk.markStart(revWalk.parseCommit(newCommit));
+      if (oldCommit != null) {
+        revWalk.markUninteresting(revWalk.parseCommit(oldCommit));
+      }
+      for (var commit : revWalk) {
+        var author = contributorDictionary.idOf(commit);
+        if (commit.getParentCount() <= 1 && author != ContributorDictionary.UNKNOWN) {
+          authors.add(author);
+          tasks.add(() -> attributeCommit(commit, markedPaths));
+        }
+      }
     }
-    for (int i = 0; i < blameResult.getResultContents().size(); i++) {
-      String line = blameResult.getResultContents().getString(i);
-      var pastLine = LineStatement.Code;
-      var actualStateLine = isComment(line, fileType, pastLine);
-      if (actualStateLine == LineStatement.Code) {
-        boolean isModifiedLine = isLineModified(i, isDelete);
-        if (isModifiedLine) {
-          PersonIdent author = blameResult.getSourceAuthor(i);
-          addOrUpdateContribution(fileType, author.getName(),isDelete, author.getEmailAddress());
+    try {
+      var futures = lane.invokeAll(tasks);
+      var tally = interval.accumulator().tally();
+      for (var i = 0; i < futures.size(); i++) {
+        var contributor = authors.get(i);
+        for (var entry : futures.get(i).get().entrySet()) {
+          tally.add(contributor, entry.getKey(), entry.getValue());
         }
       }
+      interval.accumulator().merge(tally);
+    } catch (InterruptedException | ExecutionException e) {
+      throw new IOException("Failed to attribute commits", e);
     }
+    return collectContributions(newTag, interval);
   }
 
 
   /**
-   * Adds or updates the contribution of an author for a specific file type.
+   * Counts the lines of code a commit inserts compared to its first parent, by language.
    *
-   * @param fileType    The type of the file being analyzed.
-   * @param authorName  The name of the author.
-   * @param isDelete    A boolean indicating whether the file change is a deletion.
+   * @param commit      The commit to analyze.
+   * @param markedPaths The paths marked generated or vendored by the .gitattributes.
+   * @return The number of inserted lines of code for each language.
+   * @throws IOException if the commit cannot be read.
    */
-  private void addOrUpdateContribution(LanguageName fileType, String authorName, Boolean isDelete , String authorEmail) {
-    // Implement logic to add or update the contribution of an author for the specified fileType
-    var contributor = new Contributor(authorName , authorEmail);
-    if (!contributions.containsKey(contributor)) {
-      contributions.put(contributor, new ConcurrentHashMap<>());
-    }
-    var contribution = contributions.getOrDefault(contributor, new ConcurrentHashMap<>());
-    int currentContribution = contribution.getOrDefault(fileType, 0);
-    if (!isDelete && currentContribution >= 0) {
-      contribution.put(fileType, currentContribution + 1);
-    }
-    contributions.put(contributor, contribution);
+  private Map<LanguageName, Integer> attributeCommit(RevCommit commit, Map<String, SkipReason> markedPaths) throws IOException {
+    checkCancelled();
+    var languages = new EnumMap<LanguageName, Integer>(LanguageName.class);
+    try (var handle = session.acquire()) {
+      var diffFormatter = handle.diffFormatter();
+      var reader = handle.reader();
+      var parent = commit.getParentCount() == 0 ? null : commit.getParent(0);
+      for (var diff : diffFormatter.scan(parent, commit)) {
+        if (diff.getChangeType() == DiffEntry.ChangeType.DELETE || isSkipped(reader, diff, markedPaths)) {
+          continue;
+        }
+        var fileType = recognizeLanguage(reader, diff);
+        BitSet codeLines = null;
+        for (Edit edit : diffFormatter.toFileHeader(diff).toEditList()) {
+          if (edit.getType() != INSERT && edit.getType() != REPLACE) {
+            continue;
+          }
+          if (codeLines == null) {
+            codeLines = languageRegistry.classifier(fileType).codeLines(reader.open(diff.getNewId().toObjectId()).getCachedBytes(Integer.MAX_VALUE));
+          }
+          var count = codeLines.get(edit.getBeginB(), edit.getEndB()).cardinality();
+          if (count > 0) {
+            languages.merge(fileType, count, Integer::sum);
+          }
+        }
+      }
+    }
+    return languages;
   }
 
 
   /**
-   * Generates an EditList representing the edits in a DiffEntry.
+   * Analyzes the file changes in a Git repository between two commits for a specific file type.
    *
-   * @param diff The DiffEntry representing the file changes.
-   * @return An EditList containing the edits.
-   * @throws IOException if there is an I/O error.
+   * The old side is taken from the ownership carried by the incremental blame when it is known,
+   * the new side is obtained by advancing that ownership through the edits of the file.
+   *
+   * @param diff         The DiffEntry representing the file changes.
+   * @param editList     The edits between the old and the new version of the file.
+   * @param oldTagOpt    The old tag associated with the file changes, or null.
+   * @param newCommitOpt The commit of the new tag associated with the file changes, or null.
+   * @param fileType     The type of the file being analyzed.
+   * @param interval     The state of the analysis of the interval.
+   * @throws GitAPIException if there is an error during Git operations.
+   * @throws IOException     if there is an I/O error.
    */
-  private EditList editDiffs(DiffEntry diff) throws IOException {
-    DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE);
-    diffFormatter.setRepository(git.getRepository());
-    return diffFormatter.toFileHeader(diff).toEditList();
+  private void analyzeFileChange(DiffEntry diff, EditList editList, Tag oldTagOpt, RevCommit newCommitOpt, LanguageName fileType, Interval interval) throws GitAPIException, IOException {
+    var incrementalBlame = interval.incrementalBlame();
+    var tally = interval.accumulator().tally();
+    var deletedLines = ModifiedLines.deleted(editList);
+    if (oldTagOpt != null && !deletedLines.isEmpty()) {
+      var ownershipOld = incrementalBlame.carried(diff);
+      if (ownershipOld == null) {
+        ownershipOld = getBlameResult(diff.getOldPath(), oldTagOpt);
+      }
+      analyzeContributionsForBlameResult(ownershipOld, deletedLines, fileType, true, tally);
+    }
+    if (newCommitOpt != null) {
+      var ownershipNew = incrementalBlame.advance(diff, editList, newCommitOpt);
+      analyzeContributionsForBlameResult(ownershipNew, ModifiedLines.inserted(editList), fileType, false, tally);
+    } else {
+      incrementalBlame.forget(diff.getOldPath());
+    }
+    interval.accumulator().merge(tally);
   }
 
   
   /**
-   * Checks if a line in the file has been modified based on its line number.
+   * Analyzes contributions based on the ownership of the lines of a file.
    *
-   * @param lineNumber The line number to check.
-   * @param isDelete   A boolean indicating whether the file change is a deletion.
-   * @return true if the line has been modified, false otherwise.
+   * @param ownership     The LineOwnership object containing the lines of the file and their authors.
+   * @param modifiedLines The lines of the file modified by the change.
+   * @param fileType      The type of the file being analyzed.
+   * @param isDelete      A boolean indicating whether the file change is a deletion.
+   * @param tally         The counters of the task analyzing the file.
    */
-  private boolean isLineModified(int lineNumber, boolean isDelete) {
-    if(isDelete){
-      return deleteLines.contains(lineNumber);
-    }else {
-      return insertLines.contains(lineNumber);
+  private void analyzeContributionsForBlameResult(LineOwnership ownership, ModifiedLines modifiedLines, LanguageName fileType, boolean isDelete, ContributionAccumulator.Tally tally) {
+    if (ownership == null || modifiedLines.isEmpty()) {
+      return;
+    }
+    var codeLines = languageRegistry.classifier(fileType).codeLines(ownership.getContents());
+    for (var i = codeLines.nextSetBit(0); i >= 0 && i < ownership.size(); i = codeLines.nextSetBit(i + 1)) {
+      var contributor = ownership.getAuthor(i);
+      if (!modifiedLines.contains(i) || contributor == ContributorDictionary.UNKNOWN) {
+        continue;
+      }
+      if (isDelete) {
+        tally.touch(contributor);
+      } else {
+        tally.add(contributor, fileType, 1);
+      }
     }
   }
 
 
   /**
-   * Processes edits in an EditList to update line numbers for insertions and deletions.
+   * Generates an EditList representing the edits in a DiffEntry.
    *
-   * @param edits The EditList containing the edits.
+   * @param diff The DiffEntry representing the file changes.
+   * @param handle The handle of the analysis session whose diff formatter computes the edits.
+   * @return An EditList containing the edits.
+   * @throws IOException if there is an I/O error.
    */
-  private void processEdits(EditList edits){
-    for(Edit edit : edits){
-      if(edit.getType() == INSERT  || edit.getType() == REPLACE){
-        for(int i = edit.getBeginB(); i < edit.getEndB(); i++){
-          insertLines.add(i);
-        }
-      }
-      if(edit.getType() == DELETE){
-        for(int i = edit.getBeginA(); i < edit.getEndA(); i++){
-          deleteLines.add(i);
-        }
-      }
-    }
+  private EditList editDiffs(DiffEntry diff, AnalysisSession.Handle handle) throws IOException {
+    return handle.diffFormatter().toFileHeader(diff).toEditList();
   }
 
   
   /**
    * Retrieves the blame result for a specific file at a given tag.
+   * The blame is looked up in the cache, then in the blame store, before being computed.
    *
    * @param filePath The path to the file in the repository.
    * @param tag      The tag associated with the file version.
-   * @return The BlameResult object containing information about the file's history.
+   * @return The LineOwnership object containing the author of each line of the file, or null if the file does not exist.
    * @throws GitAPIException if there is an error during Git operations.
    * @throws IOException     if there is an I/O error.
    */
-  private BlameResult getBlameResult(String filePath, Tag tag) throws GitAPIException, IOException {
-    if (blameResultCache.containsKey(filePath)) {
-      return blameResultCache.get(filePath);
-    }
-    var blameCommand = new BlameCommand(git.getRepository());
-    blameCommand.setFilePath(filePath);
-    blameCommand.setStartCommit(gitAnalysisService.resolveTagToCommit(tag.getName()));
-    blameCommand.setFollowFileRenames(true);
-    var result = blameCommand.call();
-    blameResultCache.put(filePath, result);
+  private LineOwnership getBlameResult(String filePath, Tag tag) throws GitAPIException, IOException {
+    var startCommit = gitAnalysisService.resolveTagToCommit(tag.getName());
+    var cached = blameResultCache.get(filePath, startCommit);
+    if (cached != null) {
+      return cached;
+    }
+    ObjectId blobId = null;
+    if (blameStore != null) {
+      try (var handle = session.acquire(); var treeWalk = TreeWalk.forPath(handle.reader(), filePath, startCommit.getTree())) {
+        if (treeWalk == null) {
+          return null;
+        }
+        blobId = treeWalk.getObjectId(0);
+      }
+    }
+    if (blobId != null) {
+      var stored = blameStore.get(blobId, startCommit, contributorDictionary);
+      var contents = stored == null ? null : incrementalBlame.readContents(blobId);
+      if (contents != null && contents.size() == stored.length) {
+        var result = new LineOwnership(contents, stored);
+        blameResultCache.put(filePath, startCommit, result);
+        return result;
+      }
+    }
+    BlameResult blameResult;
+    try (var generator = new BlameGenerator(git.getRepository(), filePath)) {
+      renameDetection.apply(generator);
+      generator.push(null, startCommit);
+      blameResult = generator.computeBlameResult();
+    }
+    if (blameResult == null) {
+      return null;
+    }
+    var result = LineOwnership.of(blameResult, contributorDictionary);
+    blameResultCache.put(filePath, startCommit, result);
+    if (blobId != null) {
+      blameStore.put(blobId, startCommit, result.authors(), contributorDictionary);
+    }
     return result;
   }
 
 
   /**
-   * Recognizes the language in which a given file is written.
-   * @param fileName the name of the file being analyzed.
-   * @return the corresponding LanguageName.
+   * Cancels the analyses of this analyzer. The intervals, files and commits not started yet are not analyzed,
+   * and the analysis fails with an InterruptedIOException. The files being analyzed are finished without interrupting
+   * their threads, so that the pack files and the database are never left in the middle of a read or a write.
    */
-  private LanguageName recognizeLanguage(String fileName) {
-    String extension = fileName.substring(fileName.lastIndexOf(".") + 1);
-    return switch (extension) {
-      case "java" -> LanguageName.JAVA;
-      case "py" -> LanguageName.PYTHON;
-      case "js" -> LanguageName.JAVASCRIPT;
-      case "html" -> LanguageName.HTML;
-      case "ts" -> LanguageName.TYPESCRIPT;
-      case "c", "h", "hpp", "hxx", "cpp", "hh", "cc", "cxx", "c++" -> LanguageName.C;
-      case "hs" -> LanguageName.HASKELL;
-      case "ml", "mli", "mll", "mly" -> LanguageName.OCAML;
-      case "md" -> LanguageName.MARKDOWN;
-      case "xml" -> LanguageName.XML;
-      case "rb" -> LanguageName.RUBY;
-      default -> LanguageName.OTHER;
-    };
+  public void cancel() {
+    cancelled = true;
   }
 
-  
-  private  boolean isCodeBetweenMultiLineComment(String line, LanguageName language) {
-    var commentStart = Pattern.quote(language.getMultiLineCommentStart());
-    var commentEnd = Pattern.quote(language.getMultiLineCommentEnd());
-    String regex = commentStart + ".*?" + commentEnd + ".*?" + commentStart + ".*?" + commentEnd;
-    Pattern pattern = Pattern.compile(regex);
-    var matcher = pattern.matcher(line);
-    return !matcher.find();
-  }
 
-  
   /**
-   * Checks if a line in a file is a comment based on the file type.
-   *
-   * @param line     The line of code to check.
-   * @param language The type of the file being analyzed.
-   * @param previousLineStatement The statement of the previous line.
-   * @return LineStatement The statement of the line.
+   * Stops the current task if the analysis is cancelled.
+   * @throws InterruptedIOException if the analysis is cancelled.
    */
-  private  LineStatement isComment(String line, LanguageName language, LineStatement previousLineStatement) {
-    String lineTrimmed = line.trim();
-    if (!language.getSingleLineCommentRegex().isEmpty() && (lineTrimmed.startsWith(language.getSingleLineCommentRegex())) || lineTrimmed.isEmpty() || (lineTrimmed.startsWith(language.getMultiLineCommentStart()) && lineTrimmed.endsWith(language.getMultiLineCommentEnd())) && isCodeBetweenMultiLineComment(lineTrimmed, language)) {
-      return LineStatement.SingleLineComment;
-    }
-    if (!lineTrimmed.contains(language.getMultiLineCommentStart()) && lineTrimmed.endsWith(language.getMultiLineCommentEnd())) {
-      return LineStatement.EndComment;
-    }
-    if (lineTrimmed.startsWith(language.getMultiLineCommentStart()) && lineTrimmed.endsWith(language.getMultiLineCommentEnd()) && isCodeBetweenMultiLineComment(lineTrimmed, language)) {
-      return LineStatement.StartComment;
+  private void checkCancelled() throws InterruptedIOException {
+    if (cancelled) {
+      throw new InterruptedIOException("The analysis was cancelled");
     }
-    if (!language.getSingleLineCommentRegex().isEmpty() && lineTrimmed.startsWith(language.getSingleLineCommentRegex())) {
-      return LineStatement.SingleLineComment;
-    }
-    return processMultiLineComment(lineTrimmed, language, previousLineStatement);
   }
-  
-  
-  /**
-   * Determines whether a given line of code is part of a multiline comment.
-   * This method checks if the line starts or ends with the multiline comment syntax of the given language,
-   * or if the previous line was marked as the start or part of a multiline comment.
-   * It's useful for parsing and analyzing source code to identify multiline comment sections.
-   *
-   * @param lineTrimmed The trimmed line of source code to be checked.
-   * @param language The programming language which defines the multiline comment syntax.
-   * @param previousLineStatement The classification of the previous line (e.g., start of multiline comment, part of multiline comment).
-   * @return boolean Returns true if the line is part of a multiline comment, false otherwise.
-   */
-  private  boolean isMultiLineComment(String lineTrimmed, LanguageName language, LineStatement previousLineStatement) {
-    boolean startsWithMultiLineComment = lineTrimmed.startsWith(language.getMultiLineCommentStart());
-    boolean endsWithMultiLineComment = lineTrimmed.endsWith(language.getMultiLineCommentEnd());
-    return startsWithMultiLineComment || endsWithMultiLineComment || previousLineStatement == LineStatement.StartComment || previousLineStatement == LineStatement.MultiLineComment;
-  }
-  
-  
-  /**
-   * Calculates the index of the end of a multiline comment in a given line of code.
-   * This method returns the position of the end of a multiline comment in the line.
-   * @param lineTrimmed The trimmed line of source code to be analyzed.
-   * @param language The programming language which defines the multiline comment syntax.
-   * @param startsWithMultiLineComment A boolean indicating whether the line starts with a multiline comment.
-   * @return int The index of the end of the multiline comment in the line. If the comment end is not found, returns -1.
-   */
-  private  int getEndCommentIndex(String lineTrimmed, LanguageName language, boolean startsWithMultiLineComment) {
-    String commentEnd = language.getMultiLineCommentEnd();
-    return startsWithMultiLineComment && lineTrimmed.endsWith(commentEnd) ?
-            lineTrimmed.lastIndexOf(commentEnd) : lineTrimmed.indexOf(commentEnd);
-  }
-  
-  
+
+
   /**
-   * Determines the classification of a given line of source code.
-   * This method classifies a line as the start or end of a multiline comment, a part of a multiline comment, or as regular code.
-   *
-   * @param lineTrimmed The trimmed line of source code to be analyzed.
-   * @param language The programming language which defines the multiline comment syntax.
-   * @param previousLineStatement The classification of the previous line, to provide context in case of multiline comments.
-   * @return LineStatement The classification of the line, such as StartComment, EndComment, MultiLineComment, or Code.
+   * Closes the readers, diff formatters and revision walks of the analysis session of this analyzer.
+   * The analyzer can still be used, it then opens new ones.
    */
-  private  LineStatement determineLineStatement(String lineTrimmed, LanguageName language, LineStatement previousLineStatement) {
-    boolean startsWithMultiLineComment = lineTrimmed.startsWith(language.getMultiLineCommentStart());
-    boolean endsWithMultiLineComment = lineTrimmed.endsWith(language.getMultiLineCommentEnd());
-    
-    if (startsWithMultiLineComment && !endsWithMultiLineComment) {
-      return LineStatement.StartComment;
-    } else if (previousLineStatement == LineStatement.StartComment || previousLineStatement == LineStatement.MultiLineComment) {
-      return endsWithMultiLineComment ? LineStatement.EndComment : LineStatement.MultiLineComment;
-    }
-    return LineStatement.Code;
+  @Override
+  public void close() {
+    session.close();
   }
-  
-  
+
+
   /**
-   * Processes a line of code to determine its classification with respect to multiline comments.
-   * This method decides whether a line is a part of a multiline comment or regular code.
+   * Recognizes the language of the file of a diff, from its path or the shebang line of its blob.
+   * The language is remembered for each path during the analysis, so that a blob is sniffed at most once per path.
    *
-   * @param lineTrimmed The trimmed line of source code to be analyzed.
-   * @param language The programming language which defines the multiline comment syntax.
-   * @param previousLineStatement The classification of the previous line, to provide context for multiline comments.
-   * @return LineStatement The classification of the line, such as Code, StartComment, EndComment, or MultiLineComment.
+   * @param reader The reader of the repository.
+   * @param diff   The DiffEntry representing the file changes.
+   * @return the corresponding LanguageName.
+   * @throws IOException if the blob cannot be read.
    */
-  private  LineStatement processMultiLineComment(String lineTrimmed, LanguageName language, LineStatement previousLineStatement) {
-    boolean isMultiLineComment = isMultiLineComment(lineTrimmed, language, previousLineStatement);
-    if (isMultiLineComment) {
-      int endCommentIndex = getEndCommentIndex(lineTrimmed, language, lineTrimmed.startsWith(language.getMultiLineCommentStart()));
-      if (endCommentIndex != -1 && endCommentIndex + language.getMultiLineCommentEnd().length() < lineTrimmed.length()) {
-        return LineStatement.Code;
-      }
-      return determineLineStatement(lineTrimmed, language, previousLineStatement);
+  private LanguageName recognizeLanguage(ObjectReader reader, DiffEntry diff) throws IOException {
+    var deleted = diff.getChangeType() == DiffEntry.ChangeType.DELETE;
+    var path = deleted ? diff.getOldPath() : diff.getNewPath();
+    var language = languageByPath.get(path);
+    if (language == null) {
+      language = languageRegistry.recognize(path, reader, deleted ? diff.getOldId().toObjectId() : diff.getNewId().toObjectId());
+      languageByPath.putIfAbsent(path, language);
     }
-    return LineStatement.Code;
+    return language;
   }
 
 
   /**
-   * Updates contributions based on new tags.
+   * Updates contributions based on new tags, handing the contributions of each interval to a sink as soon as they are computed.
    *
-   * @param tags The list of tags to analyze contributions for.
-   * @return A list of contributions.
+   * @param tags The list of tags to analyze contributions for, the first one being the last tag already analyzed.
+   * @param sink The sink receiving the contributions of each interval.
+   * @throws IOException if an interval cannot be analyzed or the sink fails.
    */
-  List<Contribution> updateContribution(List<Tag> tags) throws IOException {
-    // Analyze the contributions for new tags
-    List<Contribution> contributions = new ArrayList<>();
-    for (int i = 0; i < tags.size() - 1; i++) {
-      contributions.addAll(analyzeContributionForTags(tags.get(i), tags.get(i + 1)));
-    }
-    return contributions;
+  void updateContribution(List<Tag> tags, ContributionSink sink) throws IOException {
+    analyzeIntervals(tags, false, sink);
   }
 }
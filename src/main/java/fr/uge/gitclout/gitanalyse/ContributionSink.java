@@ -0,0 +1,23 @@
+package fr.uge.gitclout.gitanalyse;
+
+import fr.uge.gitclout.database.Contribution;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * This interface receives the contributions of an analysis, one interval at a time, as soon as they are computed.
+ * The intervals are analyzed concurrently, so a sink is called from several threads and in no particular order.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface ContributionSink {
+
+  /**
+   * Receives the contributions of one interval, all attached to the tag ending it.
+   * @param contributions the contributions of the interval, possibly empty.
+   * @throws IOException if the contributions cannot be kept, which stops the analysis.
+   */
+  void accept(List<Contribution> contributions) throws IOException;
+}
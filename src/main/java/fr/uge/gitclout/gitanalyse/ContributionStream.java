@@ -0,0 +1,145 @@
+package fr.uge.gitclout.gitanalyse;
+
+import fr.uge.gitclout.database.Contribution;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * This class writes the contributions of an analysis as the intervals complete, instead of keeping them until the end.
+ * The contributions of each interval are handed to a writer thread, which writes them one interval after the other,
+ * so that the analysis does not wait for the database. At most capacity intervals wait to be written: when the writer
+ * falls behind, the analysis waits for it, which keeps the memory used by the contributions bounded.
+ * Once the writer fails, the contributions waiting are dropped and the next ones are refused.
+ * Closing the stream waits for the contributions received to be written.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public final class ContributionStream implements ContributionSink, AutoCloseable {
+
+  private static final long POLL_MILLIS = 100;
+
+  private final List<Contribution> end = new ArrayList<>();
+  private final BlockingQueue<List<Contribution>> queue;
+  private final Consumer<List<Contribution>> writer;
+  private final Thread thread;
+  private final LongAdder written = new LongAdder();
+  private volatile RuntimeException failure;
+  private boolean closed;
+
+  /**
+   * Constructs a new ContributionStream, and starts its writer thread.
+   * @param writer the writer of the contributions of one interval, called from the writer thread only.
+   * @param capacity the number of intervals that can wait to be written.
+   */
+  public ContributionStream(Consumer<List<Contribution>> writer, int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    this.writer = Objects.requireNonNull(writer);
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.thread = Thread.ofVirtual().name("contribution-writer").start(this::drain);
+  }
+
+
+  /**
+   * Writes the contributions waiting, one interval after the other, until the stream is closed or the writer fails.
+   */
+  private void drain() {
+    try {
+      for (;;) {
+        var contributions = queue.take();
+        if (contributions == end) {
+          return;
+        }
+        writer.accept(contributions);
+        written.add(contributions.size());
+      }
+    } catch (InterruptedException e) {
+      failure = new IllegalStateException("Interrupted while writing the contributions", e);
+    } catch (RuntimeException e) {
+      failure = e;
+    }
+    queue.clear();
+  }
+
+
+  /**
+   * Hands the contributions of one interval to the writer thread, waiting for room if too many intervals are waiting.
+   * @param contributions the contributions of the interval.
+   * @throws IOException if the writer failed, or if the thread is interrupted while waiting.
+   */
+  @Override
+  public void accept(List<Contribution> contributions) throws IOException {
+    Objects.requireNonNull(contributions);
+    if (contributions.isEmpty()) {
+      checkFailure();
+      return;
+    }
+    offer(contributions);
+  }
+
+
+  private void offer(List<Contribution> contributions) throws IOException {
+    try {
+      do {
+        checkFailure();
+      } while (!queue.offer(contributions, POLL_MILLIS, TimeUnit.MILLISECONDS));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting to write the contributions", e);
+    }
+  }
+
+
+  private void checkFailure() throws IOException {
+    var failure = this.failure;
+    if (failure != null) {
+      throw new IOException("Failed to write the contributions", failure);
+    }
+  }
+
+
+  /**
+   * Returns the number of contributions written so far.
+   * @return the number of written contributions.
+   */
+  public long written() {
+    return written.sum();
+  }
+
+
+  /**
+   * Waits for the contributions received to be written, and stops the writer thread.
+   * @throws IOException if the writer failed, or if the thread is interrupted while waiting.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      if (failure == null) {
+        offer(end);
+      }
+    } catch (IOException e) {
+      thread.interrupt();
+    }
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      thread.interrupt();
+      throw new IOException("Interrupted while waiting for the contributions to be written", e);
+    }
+    checkFailure();
+  }
+}
@@ -0,0 +1,107 @@
+package fr.uge.gitclout.gitanalyse;
+
+import fr.uge.gitclout.database.Contributor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class gives a small int id to each contributor of a repository.
+ * Contributors are identified by their name, like the Contributor entities, and keep the first email met for them.
+ * The ids are dense, starting at 0, so they can index arrays of counters. The id of the author of each commit
+ * is remembered too, so that the lines blamed to a commit are resolved without reading its author again.
+ * Contributor entities are only created from the ids when the results are persisted.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+final class ContributorDictionary {
+
+  /**
+   * The id of an unknown contributor, for a line that could not be attributed.
+   */
+  static final int UNKNOWN = -1;
+
+  private final ConcurrentMap<ObjectId, Integer> commitIds = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+  private final ArrayList<String> names = new ArrayList<>();
+  private final ArrayList<String> emails = new ArrayList<>();
+
+  /**
+   * Returns the id of a contributor, giving it a new one the first time it is met.
+   *
+   * @param name the name of the contributor.
+   * @param email the email of the contributor.
+   * @return the id of the contributor.
+   */
+  int idOf(String name, String email) {
+    Objects.requireNonNull(name);
+    var id = ids.get(name);
+    if (id != null) {
+      return id;
+    }
+    synchronized (this) {
+      return ids.computeIfAbsent(name, __ -> {
+        names.add(name);
+        emails.add(email);
+        return names.size() - 1;
+      });
+    }
+  }
+
+
+  /**
+   * Returns the id of a contributor from one of their identities.
+   * @param ident the identity of the contributor.
+   * @return the id of the contributor.
+   */
+  int idOf(PersonIdent ident) {
+    return idOf(ident.getName(), ident.getEmailAddress());
+  }
+
+
+  /**
+   * Returns the id of the author of a commit, reading the author only the first time the commit is met.
+   * @param commit the commit, whose body must be parsed the first time.
+   * @return the id of the author of the commit, or -1 if the commit has no author name.
+   */
+  int idOf(RevCommit commit) {
+    var id = commitIds.get(commit);
+    if (id != null) {
+      return id;
+    }
+    var author = commit.getAuthorIdent();
+    id = author.getName() == null ? UNKNOWN : idOf(author);
+    commitIds.putIfAbsent(commit.copy(), id);
+    return id;
+  }
+
+
+  synchronized String name(int id) {
+    return names.get(id);
+  }
+
+
+  synchronized String email(int id) {
+    return emails.get(id);
+  }
+
+
+  /**
+   * Creates a new Contributor entity for an id, to be persisted.
+   * @param id the id of the contributor.
+   * @return a new Contributor.
+   */
+  synchronized Contributor toContributor(int id) {
+    return new Contributor(names.get(id), emails.get(id));
+  }
+
+
+  synchronized int size() {
+    return names.size();
+  }
+}
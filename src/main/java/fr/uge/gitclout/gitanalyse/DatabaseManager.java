@@ -103,6 +103,7 @@ public class DatabaseManager {
   
   /**
    * Updates tags into the database.
+   * A tag saved before the tags kept their full names is renamed, instead of being saved again.
    * @param tags a List of tags.
    * @param repository the associated repository.
    */
@@ -111,9 +112,13 @@ public class DatabaseManager {
     Objects.requireNonNull(tags);
     Objects.requireNonNull(repository);
     for (Tag tag : tags) {
-      if(!dataBaseService.existsByNameTag(tag.getName())){
+      var stored = dataBaseService.findTagByName(repository, tag.getName());
+      if (stored.isEmpty()) {
         tag.setRepository(repository);
         dataBaseService.save(tag);
+      } else if (!stored.get().getName().equals(tag.getName())) {
+        stored.get().setName(tag.getName());
+        dataBaseService.update(stored.get());
       }
     }
   }
@@ -158,7 +163,7 @@ public class DatabaseManager {
     saveRepository(result.getRepository());
     result.getRepository().setTags(result.getTags());
     saveTags(result.getTags(), result.getRepository());
-    saveContributions(result.getContributions());
+    saveContributions(result.getRepository(), result.getContributions());
   }
 
 
@@ -180,23 +185,27 @@ public class DatabaseManager {
     
     deleteTag(update.getDeletedTags());
     updateTags(update.getRepository().getTags(), update.getRepository());
-    saveContributions(update.getContributions());
+    saveContributions(update.getRepository(), update.getContributions());
   }
   
   
   /**
-   * Saves contributions into the database.
+   * Saves contributions into the database, each attached to the stored tag of the repository it was computed for.
+   * @param repository the repository of the contributions.
    * @param contributions a List of contributions.
    */
   @Transactional
-  public void saveContributions(List<Contribution> contributions) {
+  public void saveContributions(Repository repository, List<Contribution> contributions) {
+    Objects.requireNonNull(repository);
     Objects.requireNonNull(contributions);
     for (Contribution contribution : contributions) {
+      var name = contribution.getTag().getName();
+      var tag = dataBaseService.findTagByName(repository, name)
+              .orElseThrow(() -> new IllegalStateException("tag " + name + " is not saved for " + repository.getUrl()));
       contribution.setContributor(saveContributor(contribution.getContributor()));
-      contribution.setTag(dataBaseService.findTagByName(contribution.getTag().getName()));
+      contribution.setTag(tag);
       saveContribution(contribution);
     }
-
   }
   
 
@@ -0,0 +1,31 @@
+package fr.uge.gitclout.gitanalyse;
+
+import org.eclipse.jgit.transport.RefSpec;
+
+import java.util.List;
+
+/**
+ * This enum contains the scopes in which a repository can be cloned and fetched.
+ * The analysis only reads objects reachable from tags, so the TAGS scope skips the packs of branches
+ * that were never tagged. In that scope the contributors are only searched in the tagged history.
+ * The IN_PLACE scope transfers nothing: the repository is a bare or non-bare repository of the local disk,
+ * read where it is.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public enum FetchScope {
+  ALL("+refs/heads/*:refs/heads/*", "+refs/tags/*:refs/tags/*"),
+  TAGS("+refs/tags/*:refs/tags/*"),
+  IN_PLACE();
+
+  private final List<RefSpec> refSpecs;
+
+  FetchScope(String... refSpecs) {
+    this.refSpecs = List.of(refSpecs).stream().map(RefSpec::new).toList();
+  }
+
+
+  public List<RefSpec> getRefSpecs() {
+    return refSpecs;
+  }
+}
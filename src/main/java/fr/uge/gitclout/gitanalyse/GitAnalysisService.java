@@ -4,20 +4,13 @@ import fr.uge.gitclout.database.Contributor;
 import fr.uge.gitclout.database.Repository;
 import fr.uge.gitclout.database.Tag;
 import fr.uge.gitclout.gitcloutexeption.AnalyzeException;
-import fr.uge.gitclout.gitcloutexeption.CloneRepositoryException;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.diff.DiffFormatter;
-import org.eclipse.jgit.lib.ObjectReader;
-import org.eclipse.jgit.lib.PersonIdent;
-import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.CanonicalTreeParser;
-import org.eclipse.jgit.util.io.DisabledOutputStream;
 import java.io.IOException;
-import java.nio.file.Path;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -31,30 +24,37 @@ public class GitAnalysisService {
   
   private final GitRepository gitRepository;
   private final GitCloneManager gitCloneManager;
-  private Git git;
+  private final Git git;
+  private final ContributorDictionary contributorDictionary = new ContributorDictionary();
+  private TagIndex tagIndex;
   
   public GitAnalysisService(GitRepository gitRepository, Git git, GitCloneManager gitCloneManager) {
     this.gitRepository = gitRepository;
     this.git = git;
     this.gitCloneManager = gitCloneManager;
   }
+
+
   /**
-   * Clones the repository into a temporary directory and performs analysis.
-   * This includes saving the repository to the database and deleting the temporary clone.
-   *
-   * @return The path to the cloned repository.
-   * @throws CloneRepositoryException if an error occurs during cloning.
+   * Returns the dictionary giving an id to each contributor of the repository, shared by its analyses.
+   * @return the contributor dictionary of the repository.
    */
+  ContributorDictionary contributorDictionary() {
+    return contributorDictionary;
+  }
 
 
-  public Path cloneRepository() throws CloneRepositoryException {
-    Path tempDir = gitCloneManager.createTempDirectory();
-    try (Git git = gitCloneManager.cloneToDirectory(tempDir)) {
-      this.git = git;
-      return tempDir;
-    }catch (IOException e) {
-      throw new CloneRepositoryException("Failed to clone repository", e);
+  /**
+   * Returns the index of the tags of the repository, read on the first call, so that an analysis
+   * peels and resolves each tag once, from a single snapshot of the references.
+   * @return the tag index of the repository.
+   * @throws IOException if the tags cannot be read.
+   */
+  synchronized TagIndex tagIndex() throws IOException {
+    if (tagIndex == null) {
+      tagIndex = TagIndex.read(git.getRepository());
     }
+    return tagIndex;
   }
 
 
@@ -66,15 +66,15 @@ public class GitAnalysisService {
    * @throws AnalyzeException if an error occurs during the retrieval process.
    */
   public Set<Contributor> getContributors() throws IOException, GitAPIException {
-      Set<Contributor> contributors = new HashSet<>();
+      var ids = new BitSet();
       for (RevCommit commit : git.log().all().call()) {
-        PersonIdent authorIdent = commit.getAuthorIdent();
-        String authorEmail = authorIdent.getEmailAddress();
-        String authorName = authorIdent.getName();
-        if (authorName != null) {
-          contributors.add(new Contributor(authorName , authorEmail));
+        var id = contributorDictionary.idOf(commit);
+        if (id != ContributorDictionary.UNKNOWN) {
+          ids.set(id);
         }
       }
+      Set<Contributor> contributors = new HashSet<>();
+      ids.stream().forEach(id -> contributors.add(contributorDictionary.toContributor(id)));
       return contributors;
   }
 
@@ -89,9 +89,8 @@ public class GitAnalysisService {
 
   public List<Tag> ListTags() throws AnalyzeException {
     try {
-      var tags = git.tagList().call();
-      return tags.stream().map(tag -> new Tag(tag.getName().substring(tag.getName().lastIndexOf("/") + 1),tag.getObjectId().abbreviate(7).name())).collect(Collectors.toList());
-    }catch (GitAPIException e) {
+      return tagIndex().entries().stream().map(entry -> new Tag(entry.name(), entry.tagId().abbreviate(7).name())).collect(Collectors.toList());
+    }catch (IOException e) {
       throw new AnalyzeException("Failed to perform analysis", e);
     }
   }
@@ -111,7 +110,7 @@ public class GitAnalysisService {
 
   /**
    * Resolves a Git tag to its corresponding commit object.
-   * This method takes the name of a Git tag and returns the associated commit,
+   * This method takes the name of a Git tag and returns the associated commit, peeled once by the tag index,
    * allowing for the examination of the details of the commit.
    *
    * @param tagName The name of the Git tag to be resolved to a commit.
@@ -119,16 +118,11 @@ public class GitAnalysisService {
    * @throws IOException If the tag cannot be found or there is an issue accessing the repository.
    */
   RevCommit resolveTagToCommit(String tagName) throws IOException {
-    try (RevWalk walk = new RevWalk(git.getRepository())) {
-      Ref tagRef = git.getRepository().findRef(tagName);
-      if (tagRef != null) {
-        var tagObjectId = tagRef.getObjectId();
-        if (tagObjectId != null) {
-          return walk.parseCommit(tagObjectId);
-        }
-      }
+    var entry = tagIndex().get(tagName);
+    if (entry == null) {
       throw new IOException("tag not found" + tagName);
     }
+    return entry.commit();
   }
 
   
@@ -140,15 +134,27 @@ public class GitAnalysisService {
    * @throws IOException if an error occurs during the diff operation.
    */
   List<DiffEntry> getDiffBetweenEmptyTreeAndCommit(RevCommit commit) throws IOException {
-    try(ObjectReader reader = git.getRepository().newObjectReader()){
-      CanonicalTreeParser emptyTreeParser = emptyTreeParser();
-      CanonicalTreeParser commitTreeParser = new CanonicalTreeParser();
-      commitTreeParser.reset(reader, commit.getTree());
-      DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE);
-      diffFormatter.setRepository(git.getRepository());
-      return diffFormatter.scan(emptyTreeParser, commitTreeParser);
+    try (var session = new AnalysisSession(git.getRepository(), RenameDetection.NONE);
+         var handle = session.acquire()) {
+      return getDiffBetweenEmptyTreeAndCommit(commit, handle);
     }
   }
+
+
+  /**
+   * Retrieves the differences between an empty tree and a commit, with the tools of a handle of the analysis session.
+   *
+   * @param commit The current commit.
+   * @param handle The handle of the analysis session.
+   * @return A List of DiffEntry objects representing changes between git tree and one commits.
+   * @throws IOException if an error occurs during the diff operation.
+   */
+  List<DiffEntry> getDiffBetweenEmptyTreeAndCommit(RevCommit commit, AnalysisSession.Handle handle) throws IOException {
+    CanonicalTreeParser emptyTreeParser = emptyTreeParser();
+    CanonicalTreeParser commitTreeParser = new CanonicalTreeParser();
+    commitTreeParser.reset(handle.reader(), commit.getTree());
+    return handle.diffFormatter().scan(emptyTreeParser, commitTreeParser);
+  }
   
   
   /**
@@ -160,14 +166,29 @@ public class GitAnalysisService {
    * @return A List of DiffEntry objects representing changes between the two commits.
    */
   List<DiffEntry> getDiffBetweenCommits(RevCommit parent, RevCommit commit) throws IOException {
+    try (var session = new AnalysisSession(git.getRepository(), RenameDetection.NONE);
+         var handle = session.acquire()) {
+      return getDiffBetweenCommits(parent, commit, handle);
+    }
+  }
+
+
+  /**
+   * Retrieves the differences between two commits with the tools of a handle of the analysis session,
+   * the renamed files being detected as the session is configured.
+   *
+   * @param parent The parent commit.
+   * @param commit The current commit.
+   * @param handle The handle of the analysis session.
+   * @return A List of DiffEntry objects representing changes between the two commits.
+   */
+  List<DiffEntry> getDiffBetweenCommits(RevCommit parent, RevCommit commit, AnalysisSession.Handle handle) throws IOException {
     try{
-      DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE);
       CanonicalTreeParser parentTreeParser = new CanonicalTreeParser();
       CanonicalTreeParser commitTreeParser = new CanonicalTreeParser();
-      parentTreeParser.reset(git.getRepository().newObjectReader(), parent.getTree());
-      commitTreeParser.reset(git.getRepository().newObjectReader(), commit.getTree());
-      diffFormatter.setRepository(git.getRepository());
-      return diffFormatter.scan(parentTreeParser, commitTreeParser);
+      parentTreeParser.reset(handle.reader(), parent.getTree());
+      commitTreeParser.reset(handle.reader(), commit.getTree());
+      return handle.diffFormatter().scan(parentTreeParser, commitTreeParser);
     }catch (IOException e) {
       throw new IOException("Failed to get diff between commits", e);
     }
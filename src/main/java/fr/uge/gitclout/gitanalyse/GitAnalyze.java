@@ -7,6 +7,7 @@ import org.eclipse.jgit.api.errors.GitAPIException;
 import fr.uge.gitclout.database.Repository;
 import java.io.IOException;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  *  GitAnalyze class for handling Git repository analyses.
@@ -15,9 +16,10 @@ import java.util.*;
  * @author Tagnan Tremellat
  * @version 1.0
  * GitAnalyze class for handling the repository's analyzes.
+ * A run is closed once done, which releases the readers its analysis kept open.
  */
 
-public class GitAnalyze {
+public class GitAnalyze implements AutoCloseable {
   
   private final ContributionAnalyzer contributionAnalyzer;
   private final GitAnalysisService gitAnalysisService;
@@ -54,6 +56,34 @@ public class GitAnalyze {
     }
   }
 
+
+
+  /**
+   * Analyzes a Git repository, handing the contributions of each interval to a sink as soon as they are computed.
+   * The repository, its contributors and its tags are given before the contributions are analyzed,
+   * so that they can be saved first and the contributions written as they come.
+   *
+   * @param beforeContributions the consumer of the repository, its contributors and its tags, without contributions.
+   * @param sink the sink receiving the contributions of each interval.
+   * @return An optional GitAnalysisResult, without contributions, if the analysis was successful, empty otherwise.
+   * @throws AnalyzeException if an error occurs during the analysis.
+   */
+  public Optional<GitAnalysisResult> analyzeRepository(Consumer<GitAnalysisResult> beforeContributions, ContributionSink sink) throws AnalyzeException {
+    Objects.requireNonNull(beforeContributions);
+    Objects.requireNonNull(sink);
+    try {
+      List<Tag> tags = gitAnalysisService.ListTags();
+      var repository = gitAnalysisService.createAndSaveRepository();
+      var contributors = gitAnalysisService.getContributors();
+      var gitAnalysisResult = new GitAnalysisResult(repository, contributors, tags, new ArrayList<>());
+      beforeContributions.accept(gitAnalysisResult);
+      contributionAnalyzer.analyzeContributionsForTags(tags, sink);
+      return Optional.of(gitAnalysisResult);
+    } catch (Exception e) {
+      throw new AnalyzeException("Failed to analyze repository", e);
+    }
+  }
+
   
   /**
    * Saves the repository's information to the database and analyzes contributions for tags.
@@ -86,36 +116,78 @@ public class GitAnalyze {
    * @throws AnalyzeException if an error occurs during the analysis.
    */
   public Optional<GitAnalysisResult> updateRepository(Repository repository) throws GitAPIException, IOException, AnalyzeException {
+    var contributions = Collections.synchronizedList(new ArrayList<Contribution>());
+    var result = updateRepository(repository, update -> {}, contributions::addAll);
+    result.ifPresent(update -> update.setContributions(new ArrayList<>(contributions)));
+    return result;
+  }
+
+
+  /**
+   * Updates an existing repository's information, handing the contributions of each new interval to a sink
+   * as soon as they are computed.
+   * The repository, its contributors and its tags, the new ones included, are given before the contributions
+   * are analyzed, so that they can be saved first and the contributions written as they come.
+   *
+   * @param repository The existing repository to be updated.
+   * @param beforeContributions the consumer of the update, without contributions.
+   * @param sink the sink receiving the contributions of each new interval.
+   * @return An optional GitAnalysisResult, without contributions, if the update was successful, empty otherwise.
+   * @throws GitAPIException if an error occurs during Git operations.
+   * @throws IOException if an error occurs during file operations, or if the sink fails.
+   */
+  public Optional<GitAnalysisResult> updateRepository(Repository repository, Consumer<GitAnalysisResult> beforeContributions,
+                                                      ContributionSink sink) throws GitAPIException, IOException {
     Objects.requireNonNull(repository);
-      Set<Contributor> newContributors = gitAnalysisService.getContributors();
-      List<Contribution> contributions = new ArrayList<>();
-      List<Tag> updateTags = gitAnalysisService.ListTags();
-      var newTags = tagManagementService.updateTags(repository.getTags(), updateTags);
-      if (newTags == null) { return Optional.empty(); }
-      var deletedTag = tagManagementService.deleteTag(repository.getTags(), updateTags);
-        repository.getTags().removeAll(deletedTag);
-      var deletedContributor = contributorManagementService.deleteContributors(repository.getContributors() ,newContributors);
-      contributions = updateRepositoryAux(newTags, repository.getTags() , contributions);
-    return Optional.of(new GitAnalysisResult(repository, gitAnalysisService.getContributors(),
-            updateTags, contributions , deletedTag, deletedContributor));
+    Objects.requireNonNull(beforeContributions);
+    Objects.requireNonNull(sink);
+    Set<Contributor> newContributors = gitAnalysisService.getContributors();
+    List<Tag> updateTags = gitAnalysisService.ListTags();
+    tagManagementService.restoreFullNames(repository.getTags(), updateTags);
+    var newTags = tagManagementService.updateTags(repository.getTags(), updateTags);
+    if (newTags == null) { return Optional.empty(); }
+    var deletedTag = tagManagementService.deleteTag(repository.getTags(), updateTags);
+    repository.getTags().removeAll(deletedTag);
+    var deletedContributor = contributorManagementService.deleteContributors(repository.getContributors() ,newContributors);
+    var trulyNewTags = newTagsToAnalyze(newTags, repository.getTags());
+    var update = new GitAnalysisResult(repository, gitAnalysisService.getContributors(),
+            updateTags, new ArrayList<>(), deletedTag, deletedContributor);
+    beforeContributions.accept(update);
+    if (!trulyNewTags.isEmpty()) {
+      contributionAnalyzer.updateContribution(trulyNewTags, sink);
+    }
+    return Optional.of(update);
   }
-  
+
   /**
-   * Updates the repository's information and contributions.
+   * Adds the new tags to the tags of the repository.
    * @param newTags different tags between the old and new repository.
    * @param oldTags old tags of the repository.
-   * @param contributions contributions of the repository.
-   * @return a list of contributions.
-   * @throws IOException if an error occurs during file operations.
+   * @return the tags whose intervals are analyzed, starting with the last old tag, or an empty list if there are no new tags.
    */
-  private List<Contribution> updateRepositoryAux(List<Tag> newTags, List<Tag> oldTags , List<Contribution> contributions) throws IOException {
-    if(!newTags.isEmpty()){
-      var trulyNewTags = tagManagementService.getTrulyNewTagsWithLast(newTags, oldTags);
-      contributions = contributionAnalyzer.updateContribution(trulyNewTags);
-      tagManagementService.addNewTagsWithoutDuplicates(oldTags, newTags);
+  private List<Tag> newTagsToAnalyze(List<Tag> newTags, List<Tag> oldTags) {
+    if (newTags.isEmpty()) {
+      return List.of();
     }
-    return contributions;
+    var trulyNewTags = tagManagementService.getTrulyNewTagsWithLast(newTags, oldTags);
+    tagManagementService.addNewTagsWithoutDuplicates(oldTags, newTags);
+    return trulyNewTags;
   }
-}
 
 
+  /**
+   * Cancels the analysis of the run, which stops before the next interval, file or commit.
+   */
+  public void cancel() {
+    contributionAnalyzer.cancel();
+  }
+
+
+  /**
+   * Closes the analysis session of the run, releasing its readers, diff formatters and revision walks.
+   */
+  @Override
+  public void close() {
+    contributionAnalyzer.close();
+  }
+}
@@ -31,6 +31,7 @@ public class GitCloneManager {
   
   /**
    * Clones the repository into the given directory.
+   * In the TAGS scope, only the objects reachable from tags are transferred.
    *
    * @param directory the path to the directory.
    * @return a Git object of the cloned repository.
@@ -38,6 +39,9 @@ public class GitCloneManager {
    */
   public Git cloneToDirectory(Path directory) throws CloneRepositoryException {
     Objects.requireNonNull(directory);
+    if (gitRepository.fetchScope() == FetchScope.TAGS) {
+      return cloneTagsToDirectory(directory);
+    }
     try {
       return Git.cloneRepository()
               .setURI(gitRepository.remoteRepoUri())
@@ -51,6 +55,55 @@ public class GitCloneManager {
   }
   
   
+  /**
+   * Initializes a bare repository in the given directory and fetches only the tags into it.
+   *
+   * @param directory the path to the directory.
+   * @return a Git object of the cloned repository, or null if the fetch failed.
+   * @throws CloneRepositoryException if the repository could not be initialized.
+   */
+  private Git cloneTagsToDirectory(Path directory) throws CloneRepositoryException {
+    Git git;
+    try {
+      git = Git.init().setBare(true).setDirectory(directory.toFile()).call();
+    } catch (GitAPIException e) {
+      throw new CloneRepositoryException("Failed to clone repository", e);
+    }
+    try {
+      fetchInto(git);
+      return git;
+    } catch (CloneRepositoryException e) {
+      git.close();
+      return null;
+    }
+  }
+  
+  
+  /**
+   * Fetches the refs of the fetch scope of the remote repository into an existing bare clone.
+   * Only the objects missing from the clone are transferred, and refs deleted on the remote are pruned.
+   *
+   * @param git the Git object of the existing clone.
+   * @return true if a ref of the clone was updated, false if it was already up-to-date.
+   * @throws CloneRepositoryException if the fetch fails.
+   */
+  public boolean fetchInto(Git git) throws CloneRepositoryException {
+    Objects.requireNonNull(git);
+    try {
+      return !git.fetch()
+              .setRemote(gitRepository.remoteRepoUri())
+              .setRefSpecs(gitRepository.fetchScope().getRefSpecs())
+              .setRemoveDeletedRefs(true)
+              .setCredentialsProvider(credentialsProvider)
+              .call()
+              .getTrackingRefUpdates()
+              .isEmpty();
+    } catch (GitAPIException e) {
+      throw new CloneRepositoryException("Failed to fetch repository", e);
+    }
+  }
+  
+  
   /**
    * Creates a temporary directory to clone the repository into.
    *
@@ -1,12 +1,45 @@
 package fr.uge.gitclout.gitanalyse;
+import java.util.Locale;
 import java.util.Objects;
 
 /**
  * This class represents a git repository.
  * @param remoteRepoUri the uri of the remote repository.
+ * @param fetchScope the refs transferred when the repository is cloned or fetched.
  */
-public record GitRepository(String remoteRepoUri) {
+public record GitRepository(String remoteRepoUri, FetchScope fetchScope) {
   public GitRepository{
     Objects.requireNonNull(remoteRepoUri);
+    Objects.requireNonNull(fetchScope);
+  }
+  
+  
+  public GitRepository(String remoteRepoUri) {
+    this(remoteRepoUri, FetchScope.ALL);
+  }
+  
+  
+  /**
+   * Returns the uri in a canonical form, so that different spellings of the same remote share one key.
+   * Trailing slashes and the ".git" suffix are removed and the scheme and host are lower-cased.
+   * @return the normalized uri.
+   */
+  public String normalizedUri() {
+    var uri = remoteRepoUri.trim();
+    while (uri.endsWith("/")) {
+      uri = uri.substring(0, uri.length() - 1);
+    }
+    if (uri.endsWith(".git")) {
+      uri = uri.substring(0, uri.length() - ".git".length());
+    }
+    var schemeEnd = uri.indexOf("://");
+    if (schemeEnd == -1) {
+      return uri;
+    }
+    var hostEnd = uri.indexOf('/', schemeEnd + 3);
+    if (hostEnd == -1) {
+      return uri.toLowerCase(Locale.ROOT);
+    }
+    return uri.substring(0, hostEnd).toLowerCase(Locale.ROOT) + uri.substring(hostEnd);
   }
 }
\ No newline at end of file
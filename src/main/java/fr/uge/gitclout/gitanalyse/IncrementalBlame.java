@@ -0,0 +1,187 @@
+package fr.uge.gitclout.gitanalyse;
+
+import org.eclipse.jgit.blame.BlameGenerator;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class blames the files of a repository incrementally from tag to tag.
+ * It keeps the author of each line of every file it has seen, and gets the ownership at the next tag
+ * by carrying the unchanged lines through the edits between the two blobs. Only the inserted and replaced
+ * lines are blamed, and the blame stops as soon as all of them are attributed.
+ * When a blame store is given, the blames found there are reused and the computed ones are saved in it.
+ * The authors are kept as ids of the contributor dictionary of the repository, resolved through the source commit of each line.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+final class IncrementalBlame {
+
+  private record Ownership(ObjectId blobId, int[] authors) {}
+
+  private static final int PENDING = -2;
+
+  private final AnalysisSession session;
+  private final BlameStore blameStore;
+  private final ContributorDictionary dictionary;
+  private final ConcurrentMap<String, Ownership> ownerships = new ConcurrentHashMap<>();
+
+  /**
+   * Constructs a new IncrementalBlame.
+   * @param session the analysis session of the repository containing the blamed files, whose renames are followed as it is configured.
+   * @param blameStore the store of the blames, or null to not persist them.
+   * @param dictionary the contributor dictionary of the repository.
+   */
+  IncrementalBlame(AnalysisSession session, BlameStore blameStore, ContributorDictionary dictionary) {
+    this.session = Objects.requireNonNull(session);
+    this.blameStore = blameStore;
+    this.dictionary = Objects.requireNonNull(dictionary);
+  }
+
+
+  /**
+   * Returns the ownership of the old side of a diff, if it is known.
+   *
+   * @param diff the diff whose old side is wanted.
+   * @return the ownership of the old blob, or null if it was never blamed.
+   * @throws IOException if the blob cannot be read.
+   */
+  LineOwnership carried(DiffEntry diff) throws IOException {
+    Objects.requireNonNull(diff);
+    var oldBlobId = diff.getOldId().toObjectId();
+    var ownership = ownerships.get(diff.getOldPath());
+    if (ownership == null || !ownership.blobId().equals(oldBlobId)) {
+      return null;
+    }
+    return new LineOwnership(readContents(oldBlobId), ownership.authors());
+  }
+
+
+  /**
+   * Returns the ownership of the new side of a diff and remembers it for the next tag.
+   * If the ownership of the old side is known, only the lines the edits insert or replace are blamed,
+   * otherwise the whole file is.
+   *
+   * @param diff the diff whose new side is wanted.
+   * @param edits the edits between the old and the new blob.
+   * @param commit the commit of the new tag.
+   * @return the ownership of the new blob, or null if the file does not exist at the commit.
+   * @throws IOException if the blame fails.
+   */
+  LineOwnership advance(DiffEntry diff, EditList edits, RevCommit commit) throws IOException {
+    Objects.requireNonNull(diff);
+    Objects.requireNonNull(edits);
+    Objects.requireNonNull(commit);
+    var newBlobId = diff.getNewId().toObjectId();
+    var stored = blameStore == null ? null : blameStore.get(newBlobId, commit, dictionary);
+    if (stored != null) {
+      var contents = readContents(newBlobId);
+      if (contents.size() == stored.length) {
+        remember(diff, stored);
+        return new LineOwnership(contents, stored);
+      }
+    }
+    var previous = diff.getChangeType() == DiffEntry.ChangeType.ADD ? null : ownerships.get(diff.getOldPath());
+    if (previous != null && !previous.blobId().equals(diff.getOldId().toObjectId())) {
+      previous = null;
+    }
+    try (var generator = new BlameGenerator(session.repository(), diff.getNewPath())) {
+      session.renameDetection().apply(generator);
+      generator.push(null, commit);
+      var contents = generator.getResultContents();
+      if (contents == null) {
+        return null;
+      }
+      var authors = new int[contents.size()];
+      Arrays.fill(authors, PENDING);
+      var pending = previous == null ? authors.length : carry(previous.authors(), edits, authors);
+      while (pending > 0 && generator.next()) {
+        var author = dictionary.idOf(generator.getSourceCommit());
+        for (var line = generator.getResultStart(); line < generator.getResultEnd(); line++) {
+          if (authors[line] == PENDING) {
+            authors[line] = author;
+            pending--;
+          }
+        }
+      }
+      if (pending > 0) {
+        for (var line = 0; line < authors.length; line++) {
+          if (authors[line] == PENDING) {
+            authors[line] = ContributorDictionary.UNKNOWN;
+          }
+        }
+      }
+      if (blameStore != null) {
+        blameStore.put(newBlobId, commit, authors, dictionary);
+      }
+      remember(diff, authors);
+      return new LineOwnership(contents, authors);
+    }
+  }
+
+
+  /**
+   * Reads the content of a blob.
+   * @param blobId the blob to read.
+   * @return the content of the blob.
+   * @throws IOException if the blob cannot be read.
+   */
+  RawText readContents(ObjectId blobId) throws IOException {
+    try (var handle = session.acquire()) {
+      return new RawText(handle.reader().open(blobId).getCachedBytes(Integer.MAX_VALUE));
+    }
+  }
+
+
+  /**
+   * Forgets the ownership of a file, once it is deleted.
+   * @param path the path of the file.
+   */
+  void forget(String path) {
+    ownerships.remove(Objects.requireNonNull(path));
+  }
+
+
+  private void remember(DiffEntry diff, int[] authors) {
+    if (diff.getChangeType() == DiffEntry.ChangeType.RENAME) {
+      ownerships.remove(diff.getOldPath());
+    }
+    ownerships.put(diff.getNewPath(), new Ownership(diff.getNewId().toObjectId(), authors));
+  }
+
+
+  /**
+   * Copies the authors of the lines the edits leave untouched.
+   *
+   * @param previous the authors of the old blob.
+   * @param edits the edits between the old and the new blob.
+   * @param authors the authors of the new blob, filled for the untouched lines.
+   * @return the number of lines still to attribute.
+   */
+  private static int carry(int[] previous, EditList edits, int[] authors) {
+    var oldLine = 0;
+    var newLine = 0;
+    var pending = 0;
+    for (Edit edit : edits) {
+      while (newLine < edit.getBeginB() && oldLine < previous.length) {
+        authors[newLine++] = previous[oldLine++];
+      }
+      pending += edit.getEndB() - newLine;
+      oldLine = edit.getEndA();
+      newLine = edit.getEndB();
+    }
+    while (newLine < authors.length && oldLine < previous.length) {
+      authors[newLine++] = previous[oldLine++];
+    }
+    return pending + authors.length - newLine;
+  }
+}
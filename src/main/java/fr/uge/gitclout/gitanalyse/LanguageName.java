@@ -3,6 +3,7 @@ package fr.uge.gitclout.gitanalyse;
 /**
  * This enum contains the names of the languages supported by the application.
  * It also contains the regexes used to detect comments in the source code.
+ * The contributions store the ordinal of the languages, so new languages are added at the end.
  * @author Tagnan Tremellat
  * @version 1.0
  */
@@ -20,7 +21,10 @@ public enum LanguageName {
   OTHER("", "", ""),
   MARKDOWN("" , "", ""),
   XML ("", "<!--", "-->"),
-  RUBY("#", "=begin", "=end");
+  RUBY("#", "=begin", "=end"),
+  SHELL("#", "", ""),
+  MAKEFILE("#", "", ""),
+  DOCKERFILE("#", "", "");
 
   private final String singleLineCommentRegex;
   private final String multiLineCommentStart;
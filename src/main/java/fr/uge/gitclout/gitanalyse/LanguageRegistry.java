@@ -0,0 +1,211 @@
+package fr.uge.gitclout.gitanalyse;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * This class recognizes the language of the files, from rules loaded from the configuration.
+ * A file is recognized by its exact name, then by its extension, and then, for the other files,
+ * by the interpreter of the shebang line at the start of its blob. Each language also carries its comment syntax.
+ * The default rules are read from the languages.properties resource, and a file given in the configuration
+ * can add or replace rules without rebuilding the application.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+@Singleton
+public class LanguageRegistry {
+
+  private static final String DEFAULT_RULES = "/languages.properties";
+  private static final int SHEBANG_BYTES = 128;
+
+  private final Map<String, LanguageName> byExtension = new HashMap<>();
+  private final Map<String, LanguageName> byFilename = new HashMap<>();
+  private final Map<String, LanguageName> byInterpreter = new HashMap<>();
+  private final Map<LanguageName, CommentClassifier> classifiers = new EnumMap<>(LanguageName.class);
+
+  /**
+   * Constructs a new LanguageRegistry from the default rules and the rules of a file.
+   * @param rulesFile the properties file adding or replacing rules, or an empty string for the default rules only.
+   * @throws IOException if the rules cannot be read.
+   */
+  @Inject
+  public LanguageRegistry(@Value("${gitclout.languages.file:}") String rulesFile) throws IOException {
+    Objects.requireNonNull(rulesFile);
+    var rules = defaultRules();
+    if (!rulesFile.isBlank()) {
+      try (var input = Files.newInputStream(Path.of(rulesFile))) {
+        load(rules, input);
+      }
+    }
+    register(rules);
+  }
+
+
+  /**
+   * Constructs a new LanguageRegistry from the default rules.
+   */
+  public LanguageRegistry() {
+    register(defaultRules());
+  }
+
+
+  /**
+   * Recognizes the language of a file from its path only.
+   * @param path the path of the file.
+   * @return the language of the file, or null if no name or extension rule matches it.
+   */
+  public LanguageName byPath(String path) {
+    var name = path.substring(path.lastIndexOf('/') + 1);
+    var language = byFilename.get(name);
+    if (language != null) {
+      return language;
+    }
+    var dot = name.lastIndexOf('.');
+    return dot < 0 ? null : byExtension.get(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+  }
+
+
+  /**
+   * Recognizes the language of a file from its path, or from the shebang line of its blob.
+   *
+   * @param path the path of the file.
+   * @param reader the reader of the repository of the file.
+   * @param blobId the blob of the file.
+   * @return the language of the file, OTHER if no rule matches it.
+   * @throws IOException if the blob cannot be read.
+   */
+  public LanguageName recognize(String path, ObjectReader reader, AnyObjectId blobId) throws IOException {
+    var language = byPath(path);
+    if (language != null) {
+      return language;
+    }
+    if (blobId == null || ObjectId.zeroId().equals(blobId)) {
+      return LanguageName.OTHER;
+    }
+    var interpreter = interpreter(reader, blobId);
+    if (interpreter == null) {
+      return LanguageName.OTHER;
+    }
+    language = byInterpreter.get(interpreter);
+    if (language == null) {
+      language = byInterpreter.get(interpreter.replaceFirst("[0-9.]+$", ""));
+    }
+    return language == null ? LanguageName.OTHER : language;
+  }
+
+
+  /**
+   * Returns the classifier of the comment syntax of a language.
+   * @param language the language.
+   * @return the comment classifier of the language.
+   */
+  public CommentClassifier classifier(LanguageName language) {
+    return classifiers.get(Objects.requireNonNull(language));
+  }
+
+
+  /**
+   * Reads the interpreter named by the shebang line of a blob, looking only at its first bytes.
+   * "#!/usr/bin/env python3" and "#!/usr/bin/python3" both give "python3".
+   */
+  private static String interpreter(ObjectReader reader, AnyObjectId blobId) throws IOException {
+    var head = new byte[SHEBANG_BYTES];
+    int length;
+    try (var input = reader.open(blobId, Constants.OBJ_BLOB).openStream()) {
+      length = input.readNBytes(head, 0, head.length);
+    }
+    if (length < 2 || head[0] != '#' || head[1] != '!') {
+      return null;
+    }
+    var end = 2;
+    while (end < length && head[end] != '\n' && head[end] != '\r') {
+      end++;
+    }
+    var words = new String(head, 2, end - 2, StandardCharsets.UTF_8).trim().split("\\s+");
+    var index = 0;
+    if (words[0].endsWith("/env")) {
+      index = 1;
+      while (index < words.length && words[index].startsWith("-")) {
+        index++;
+      }
+    }
+    if (index >= words.length || words[index].isEmpty()) {
+      return null;
+    }
+    return words[index].substring(words[index].lastIndexOf('/') + 1);
+  }
+
+
+  private static Properties defaultRules() {
+    var rules = new Properties();
+    try (var input = LanguageRegistry.class.getResourceAsStream(DEFAULT_RULES)) {
+      if (input == null) {
+        throw new IllegalStateException("Missing resource " + DEFAULT_RULES);
+      }
+      load(rules, input);
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot read " + DEFAULT_RULES, e);
+    }
+    return rules;
+  }
+
+
+  private static void load(Properties rules, InputStream input) throws IOException {
+    var loaded = new Properties();
+    loaded.load(input);
+    rules.putAll(loaded);
+  }
+
+
+  private void register(Properties rules) {
+    for (var key : rules.stringPropertyNames()) {
+      var dot = key.indexOf('.');
+      if (dot < 0) {
+        throw new IllegalArgumentException("Invalid language rule " + key);
+      }
+      var language = LanguageName.valueOf(key.substring(0, dot));
+      var rule = key.substring(dot + 1);
+      switch (rule) {
+        case "extensions" -> put(byExtension, rules.getProperty(key).toLowerCase(Locale.ROOT), language);
+        case "filenames" -> put(byFilename, rules.getProperty(key), language);
+        case "interpreters" -> put(byInterpreter, rules.getProperty(key), language);
+        case "comment.single", "comment.start", "comment.end" -> { }
+        default -> throw new IllegalArgumentException("Invalid language rule " + key);
+      }
+    }
+    for (var language : LanguageName.values()) {
+      var name = language.name();
+      classifiers.put(language, new CommentClassifier(
+              rules.getProperty(name + ".comment.single", language.getSingleLineCommentRegex()),
+              rules.getProperty(name + ".comment.start", language.getMultiLineCommentStart()),
+              rules.getProperty(name + ".comment.end", language.getMultiLineCommentEnd())));
+    }
+  }
+
+
+  private static void put(Map<String, LanguageName> rules, String values, LanguageName language) {
+    for (var value : values.split(",")) {
+      var trimmed = value.trim();
+      if (!trimmed.isEmpty()) {
+        rules.put(trimmed, language);
+      }
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package fr.uge.gitclout.gitanalyse;
+
+import org.eclipse.jgit.blame.BlameResult;
+import org.eclipse.jgit.diff.RawText;
+
+import java.util.Objects;
+
+/**
+ * This class represents the content of a file at a given commit and the author of each of its lines.
+ * The authors are the ids given by the contributor dictionary of the repository the file belongs to.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public final class LineOwnership {
+
+  private final RawText contents;
+  private final int[] authors;
+
+  /**
+   * Constructs a new LineOwnership.
+   * @param contents the content of the file.
+   * @param authors the id of the author of each line of the file.
+   */
+  LineOwnership(RawText contents, int[] authors) {
+    this.contents = Objects.requireNonNull(contents);
+    this.authors = Objects.requireNonNull(authors);
+    if (contents.size() != authors.length) {
+      throw new IllegalArgumentException("one author per line is expected");
+    }
+  }
+
+
+  /**
+   * Creates a LineOwnership from a complete blame of a file, resolving each line through its source commit.
+   * @param blameResult the blame result, computed for every line.
+   * @param dictionary the contributor dictionary of the repository.
+   * @return the ownership of the blamed file.
+   */
+  static LineOwnership of(BlameResult blameResult, ContributorDictionary dictionary) {
+    Objects.requireNonNull(blameResult);
+    Objects.requireNonNull(dictionary);
+    var contents = blameResult.getResultContents();
+    var authors = new int[contents.size()];
+    for (var i = 0; i < authors.length; i++) {
+      var commit = blameResult.getSourceCommit(i);
+      authors[i] = commit == null ? ContributorDictionary.UNKNOWN : dictionary.idOf(commit);
+    }
+    return new LineOwnership(contents, authors);
+  }
+
+
+  public RawText getContents() {
+    return contents;
+  }
+
+
+  /**
+   * Returns the number of lines of the file.
+   * @return the number of lines.
+   */
+  public int size() {
+    return authors.length;
+  }
+
+
+  /**
+   * Returns the author of a line.
+   * @param line the index of the line, starting at 0.
+   * @return the id of the author of the line, or -1 if it could not be attributed.
+   */
+  public int getAuthor(int line) {
+    return authors[line];
+  }
+
+
+  /**
+   * Estimates the number of bytes held in memory by this ownership, its content and one id per line.
+   * @return the estimated number of bytes.
+   */
+  long estimatedBytes() {
+    return 64L + contents.getRawContent().length + (long) Integer.BYTES * authors.length;
+  }
+
+
+  int[] authors() {
+    return authors;
+  }
+}
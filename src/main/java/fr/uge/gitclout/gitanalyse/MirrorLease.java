@@ -0,0 +1,49 @@
+package fr.uge.gitclout.gitanalyse;
+
+import org.eclipse.jgit.api.Git;
+
+import java.util.Objects;
+
+/**
+ * This class represents the use of a mirror by an analysis.
+ * A mirror is never evicted from the store while one of its leases is open.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public final class MirrorLease implements AutoCloseable {
+
+  private final Git git;
+  private final Runnable release;
+  private boolean closed;
+
+  MirrorLease(Git git, Runnable release) {
+    this.git = Objects.requireNonNull(git);
+    this.release = Objects.requireNonNull(release);
+  }
+
+
+  /**
+   * Returns the Git object reading from the mirror.
+   * @return the Git object.
+   */
+  public Git git() {
+    return git;
+  }
+
+
+  /**
+   * Closes the Git object and gives the mirror back to the store.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      git.close();
+    } finally {
+      release.run();
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package fr.uge.gitclout.gitanalyse;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * This class repacks the mirrors and writes their commit-graph and reachability bitmaps.
+ * The history walks of an analysis (log, blame, tag resolution) read commits from the commit-graph
+ * instead of inflating them, and the bitmaps speed up the reachability queries of later fetches.
+ * A mirror is only repacked when it has no bitmap yet, as after its clone, or when its fetches left more loose objects
+ * or packs than the thresholds, like git gc --auto does. Between two repacks, the commits fetched since the last one
+ * are missing from the commit-graph and are parsed from the packs instead.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+@Singleton
+public class MirrorMaintenance {
+  private static final Logger logger = LoggerFactory.getLogger(MirrorMaintenance.class);
+  private final boolean enabled;
+  private final long maxLooseObjects;
+  private final int maxPacks;
+
+  /**
+   * Constructs a new MirrorMaintenance.
+   * @param enabled whether the mirrors are maintained after a clone or a fetch.
+   * @param maxLooseObjects the number of loose objects above which a mirror is repacked.
+   * @param maxPacks the number of packs above which a mirror is repacked.
+   */
+  @Inject
+  public MirrorMaintenance(@Value("${gitclout.mirror.maintenance:true}") boolean enabled,
+                           @Value("${gitclout.mirror.repack.max-loose-objects:6700}") long maxLooseObjects,
+                           @Value("${gitclout.mirror.repack.max-packs:50}") int maxPacks) {
+    if (maxLooseObjects < 0 || maxPacks < 1) {
+      throw new IllegalArgumentException("maxLooseObjects must not be negative and maxPacks must be positive");
+    }
+    this.enabled = enabled;
+    this.maxLooseObjects = maxLooseObjects;
+    this.maxPacks = maxPacks;
+  }
+
+
+  /**
+   * Constructs a new MirrorMaintenance with the thresholds of git gc --auto.
+   * @param enabled whether the mirrors are maintained after a clone or a fetch.
+   */
+  public MirrorMaintenance(boolean enabled) {
+    this(enabled, 6700, 50);
+  }
+
+
+  /**
+   * Repacks a mirror and writes its commit-graph and bitmaps, if the maintenance is enabled
+   * and the mirror needs it. A failure is only logged, the mirror stays usable without these files.
+   *
+   * @param git the Git object of the mirror.
+   * @return true if the mirror was repacked.
+   */
+  public boolean maintain(Git git) {
+    Objects.requireNonNull(git);
+    if (!enabled) {
+      return false;
+    }
+    var start = System.nanoTime();
+    try {
+      if (!needsRepack(git)) {
+        return false;
+      }
+      var config = git.getRepository().getConfig();
+      config.setBoolean(ConfigConstants.CONFIG_CORE_SECTION, null, ConfigConstants.CONFIG_COMMIT_GRAPH, true);
+      config.setBoolean(ConfigConstants.CONFIG_GC_SECTION, null, ConfigConstants.CONFIG_KEY_WRITE_COMMIT_GRAPH, true);
+      config.setBoolean(ConfigConstants.CONFIG_PACK_SECTION, null, ConfigConstants.CONFIG_KEY_BUILD_BITMAPS, true);
+      config.save();
+      git.gc().call();
+      logger.info("Mirror " + git.getRepository().getDirectory() + " maintained in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+      return true;
+    } catch (IOException | GitAPIException e) {
+      logger.error("Failed to maintain mirror " + git.getRepository().getDirectory(), e);
+      return false;
+    }
+  }
+
+
+  /**
+   * Checks if a mirror has no bitmap yet, or more loose objects or packs than the thresholds.
+   * Counting them only lists the object directories, it reads no object.
+   */
+  private boolean needsRepack(Git git) throws IOException {
+    if (!(git.getRepository() instanceof FileRepository repository)) {
+      return false;
+    }
+    var statistics = new GC(repository).getStatistics();
+    return statistics.numberOfBitmaps == 0
+            || statistics.numberOfLooseObjects > maxLooseObjects
+            || statistics.numberOfPackFiles > maxPacks;
+  }
+}
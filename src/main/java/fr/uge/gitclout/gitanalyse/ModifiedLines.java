@@ -0,0 +1,126 @@
+package fr.uge.gitclout.gitanalyse;
+
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+
+import java.util.Objects;
+
+import static org.eclipse.jgit.diff.Edit.Type.*;
+
+/**
+ * This class represents the lines of one file modified by its edits, as sorted ranges of line numbers.
+ * The lines are usually checked in increasing order, so a cursor follows the ranges and a check costs
+ * no allocation and, amortized, constant time. A check going backwards falls back to a binary search.
+ * An instance belongs to the task analyzing its file and is not thread-safe.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public final class ModifiedLines {
+
+  private final int[] starts;
+  private final int[] ends;
+  private final int size;
+  private int cursor;
+
+  private ModifiedLines(int[] starts, int[] ends, int size) {
+    this.starts = starts;
+    this.ends = ends;
+    this.size = size;
+  }
+
+
+  /**
+   * Returns the lines of the new version of a file that the edits insert or replace.
+   * @param edits the edits between the two versions of the file.
+   * @return the inserted lines.
+   */
+  public static ModifiedLines inserted(EditList edits) {
+    Objects.requireNonNull(edits);
+    var starts = new int[edits.size()];
+    var ends = new int[edits.size()];
+    var size = 0;
+    for (Edit edit : edits) {
+      if ((edit.getType() == INSERT || edit.getType() == REPLACE) && edit.getLengthB() > 0) {
+        starts[size] = edit.getBeginB();
+        ends[size++] = edit.getEndB();
+      }
+    }
+    return new ModifiedLines(starts, ends, size);
+  }
+
+
+  /**
+   * Returns the lines of the old version of a file that the edits only delete.
+   * @param edits the edits between the two versions of the file.
+   * @return the deleted lines.
+   */
+  public static ModifiedLines deleted(EditList edits) {
+    Objects.requireNonNull(edits);
+    var starts = new int[edits.size()];
+    var ends = new int[edits.size()];
+    var size = 0;
+    for (Edit edit : edits) {
+      if (edit.getType() == DELETE && edit.getLengthA() > 0) {
+        starts[size] = edit.getBeginA();
+        ends[size++] = edit.getEndA();
+      }
+    }
+    return new ModifiedLines(starts, ends, size);
+  }
+
+
+  /**
+   * Checks if a line is modified.
+   * @param line the line number, starting at 0.
+   * @return true if the line is in one of the ranges, false otherwise.
+   */
+  public boolean contains(int line) {
+    if (cursor > 0 && line < ends[cursor - 1]) {
+      cursor = search(line);
+    }
+    while (cursor < size && ends[cursor] <= line) {
+      cursor++;
+    }
+    return cursor < size && starts[cursor] <= line;
+  }
+
+
+  /**
+   * Checks if no line is modified, in which case the file does not need to be read.
+   * @return true if there is no modified line.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+
+  /**
+   * Returns the number of modified lines.
+   * @return the number of lines in the ranges.
+   */
+  public int count() {
+    var count = 0;
+    for (var i = 0; i < size; i++) {
+      count += ends[i] - starts[i];
+    }
+    return count;
+  }
+
+
+  /**
+   * Returns the index of the first range ending after a line.
+   */
+  private int search(int line) {
+    var low = 0;
+    var high = size;
+    while (low < high) {
+      var middle = (low + high) >>> 1;
+      if (ends[middle] <= line) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+}
@@ -0,0 +1,52 @@
+package fr.uge.gitclout.gitanalyse;
+
+import io.micronaut.context.annotation.Context;
+import io.micronaut.context.annotation.Value;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class installs the JGit pack cache settings read from the application properties.
+ * Blame and diff read most objects from pack files, so the default limits of JGit are too small for large repositories.
+ * It is created when the application starts, before any repository is opened.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+@Context
+public class PackCacheConfiguration {
+  private static final Logger logger = LoggerFactory.getLogger(PackCacheConfiguration.class);
+  private final WindowCacheConfig windowCacheConfig;
+
+  /**
+   * Constructs the configuration and installs it as the JGit window cache configuration.
+   * @param packedGitLimit the maximum number of bytes of pack files held in memory.
+   * @param packedGitWindowSize the size of a window read from a pack file, a power of 2.
+   * @param packedGitMMAP whether pack files are memory-mapped instead of read.
+   * @param packedGitOpenFiles the maximum number of pack files kept open.
+   * @param deltaBaseCacheLimit the maximum number of bytes of delta bases cached per reader.
+   * @param streamFileThreshold the size from which objects are streamed instead of loaded in memory.
+   */
+  public PackCacheConfiguration(@Value("${gitclout.jgit.packed-git-limit:268435456}") long packedGitLimit,
+                                @Value("${gitclout.jgit.packed-git-window-size:65536}") int packedGitWindowSize,
+                                @Value("${gitclout.jgit.packed-git-mmap:false}") boolean packedGitMMAP,
+                                @Value("${gitclout.jgit.packed-git-open-files:128}") int packedGitOpenFiles,
+                                @Value("${gitclout.jgit.delta-base-cache-limit:52428800}") int deltaBaseCacheLimit,
+                                @Value("${gitclout.jgit.stream-file-threshold:52428800}") int streamFileThreshold) {
+    windowCacheConfig = new WindowCacheConfig();
+    windowCacheConfig.setPackedGitLimit(packedGitLimit);
+    windowCacheConfig.setPackedGitWindowSize(packedGitWindowSize);
+    windowCacheConfig.setPackedGitMMAP(packedGitMMAP);
+    windowCacheConfig.setPackedGitOpenFiles(packedGitOpenFiles);
+    windowCacheConfig.setDeltaBaseCacheLimit(deltaBaseCacheLimit);
+    windowCacheConfig.setStreamFileThreshold(streamFileThreshold);
+    windowCacheConfig.install();
+    logger.info("JGit pack cache installed : limit " + packedGitLimit + " bytes, window " + packedGitWindowSize
+            + " bytes, mmap " + packedGitMMAP + ", delta base cache " + deltaBaseCacheLimit + " bytes");
+  }
+
+
+  public WindowCacheConfig getWindowCacheConfig() {
+    return windowCacheConfig;
+  }
+}
@@ -0,0 +1,17 @@
+package fr.uge.gitclout.gitanalyse;
+
+/**
+ * This interface receives the progress of an analysis, as its intervals complete.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+  /**
+   * Receives the progress of an analysis, the reports coming in increasing order.
+   * @param done the number of intervals analyzed so far.
+   * @param total the number of intervals to analyze.
+   */
+  void updateProgress(int done, int total);
+}
@@ -0,0 +1,141 @@
+package fr.uge.gitclout.gitanalyse;
+
+import org.eclipse.jgit.blame.BlameGenerator;
+import org.eclipse.jgit.diff.DiffFormatter;
+
+import java.util.Objects;
+
+/**
+ * This class holds the way renamed files are followed by the analysis.
+ * When renames are detected in the diffs between two tags and between the commits attributed in DIFF mode,
+ * a renamed file keeps the ownership of its lines instead of being deleted and added again, which would cost two blames.
+ * The rename limit bounds the number of files compared by content in one diff: above it, only the renames
+ * keeping the content unchanged are detected. The rename score is the similarity, in percent, a file needs
+ * to be considered renamed. Following renames in blame makes the blame look at the history of a file
+ * before its renames, at the cost of a rename detection at each step of that history.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public final class RenameDetection {
+
+  /**
+   * The default maximum number of files compared by content in one diff.
+   */
+  public static final int DEFAULT_RENAME_LIMIT = 1000;
+
+  /**
+   * The default similarity, in percent, for a file to be considered renamed.
+   */
+  public static final int DEFAULT_RENAME_SCORE = 60;
+
+  /**
+   * The detection reporting a renamed file as a deletion and an addition, and not following the renames in blame.
+   */
+  public static final RenameDetection NONE = new RenameDetection(false, 0, 0, false);
+
+  private final boolean detectInDiffs;
+  private final int renameLimit;
+  private final int renameScore;
+  private final boolean followInBlame;
+
+  /**
+   * Constructs a new RenameDetection.
+   * @param detectInDiffs true to detect the renames in the diffs between two tags and in the commits attributed in DIFF mode.
+   * @param renameLimit the maximum number of files compared by content in one diff, 0 to only detect unchanged renames.
+   * @param renameScore the similarity, between 0 and 100, for a file to be considered renamed.
+   * @param followInBlame true to follow the renames of a file when it is blamed.
+   */
+  public RenameDetection(boolean detectInDiffs, int renameLimit, int renameScore, boolean followInBlame) {
+    if (renameLimit < 0) {
+      throw new IllegalArgumentException("renameLimit must be positive or zero");
+    }
+    if (renameScore < 0 || renameScore > 100) {
+      throw new IllegalArgumentException("renameScore must be between 0 and 100");
+    }
+    this.detectInDiffs = detectInDiffs;
+    this.renameLimit = renameLimit;
+    this.renameScore = renameScore;
+    this.followInBlame = followInBlame;
+  }
+
+
+  /**
+   * Constructs a new RenameDetection detecting the renames in the diffs and following them in blame, with the default limit and score.
+   */
+  public RenameDetection() {
+    this(true, DEFAULT_RENAME_LIMIT, DEFAULT_RENAME_SCORE, true);
+  }
+
+
+  /**
+   * Checks if the renames are detected in the diffs between two tags and in the commits attributed in DIFF mode.
+   * @return true if the renames are detected.
+   */
+  public boolean detectInDiffs() {
+    return detectInDiffs;
+  }
+
+
+  /**
+   * Returns the maximum number of files compared by content in one diff.
+   * @return the rename limit.
+   */
+  public int renameLimit() {
+    return renameLimit;
+  }
+
+
+  /**
+   * Returns the similarity, in percent, for a file to be considered renamed.
+   * @return the rename score.
+   */
+  public int renameScore() {
+    return renameScore;
+  }
+
+
+  /**
+   * Checks if the renames of a file are followed when it is blamed.
+   * @return true if blame follows the renames.
+   */
+  public boolean followInBlame() {
+    return followInBlame;
+  }
+
+
+  /**
+   * Sets up the rename detection of a diff formatter, whose reader must already be set.
+   * @param diffFormatter the diff formatter.
+   */
+  void apply(DiffFormatter diffFormatter) {
+    Objects.requireNonNull(diffFormatter);
+    diffFormatter.setDetectRenames(detectInDiffs);
+    if (detectInDiffs) {
+      var renameDetector = diffFormatter.getRenameDetector();
+      renameDetector.setRenameLimit(renameLimit);
+      renameDetector.setRenameScore(renameScore);
+    }
+  }
+
+
+  /**
+   * Sets up the rename detection of a blame generator.
+   * @param generator the blame generator.
+   */
+  void apply(BlameGenerator generator) {
+    Objects.requireNonNull(generator);
+    generator.setFollowFileRenames(followInBlame);
+    if (followInBlame) {
+      var renameDetector = generator.getRenameDetector();
+      renameDetector.setRenameLimit(renameLimit);
+      renameDetector.setRenameScore(renameScore);
+    }
+  }
+
+
+  @Override
+  public String toString() {
+    return "renames in diffs " + (detectInDiffs ? "on" : "off") + ", limit " + renameLimit + ", score " + renameScore
+            + ", follow in blame " + (followInBlame ? "on" : "off");
+  }
+}
@@ -0,0 +1,509 @@
+package fr.uge.gitclout.gitanalyse;
+
+import fr.uge.gitclout.gitcloutexeption.CloneRepositoryException;
+import fr.uge.gitclout.gitcloutexeption.DeleteRepositoryException;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.util.FS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * This class manages a persistent store of bare mirrors, one per remote repository.
+ * A repository is cloned the first time it is requested, later requests only fetch the missing objects.
+ * Mirrors are keyed by the normalized uri of the remote repository.
+ * The store keeps its disk usage under a byte budget by evicting the least recently used mirrors,
+ * a mirror being used by an analysis is never evicted.
+ * Repositories imported in place are opened where they are, provided they are under one of the local roots.
+ * After a clone, or a fetch that updated refs, the mirror is maintained: repacked with a commit-graph and bitmaps when it needs it.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+@Singleton
+public class RepositoryMirrorStore {
+
+  private static final Logger logger = LoggerFactory.getLogger(RepositoryMirrorStore.class);
+  private final Path root;
+  private final long maxBytes;
+  private final List<Path> localRoots;
+  private final MirrorMaintenance mirrorMaintenance;
+  private final ConcurrentMap<Path, Mirror> mirrors = new ConcurrentHashMap<>();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  /**
+   * State of a mirror of the store.
+   * The mutable fields are guarded by the mirror itself, the clone and fetch operations by the update lock.
+   */
+  private static final class Mirror {
+    private final Path directory;
+    private final ReentrantLock updateLock = new ReentrantLock();
+    private long sizeBytes;
+    private long lastAccess;
+    private int leases;
+    private boolean deleted;
+
+    private Mirror(Path directory, long lastAccess) {
+      this.directory = directory;
+      this.lastAccess = lastAccess;
+    }
+  }
+
+  /**
+   * Constructs a new RepositoryMirrorStore.
+   * @param root the directory holding the mirrors.
+   * @param maxBytes the disk budget of the store, in bytes.
+   * @param localRoots the comma-separated directories under which repositories can be imported in place.
+   * @param mirrorMaintenance the maintenance run after a clone or a fetch.
+   */
+  @Inject
+  public RepositoryMirrorStore(@Value("${gitclout.mirror.root:mirrors}") String root,
+                               @Value("${gitclout.mirror.max-bytes:10737418240}") long maxBytes,
+                               @Value("${gitclout.local.roots:}") String localRoots,
+                               MirrorMaintenance mirrorMaintenance) {
+    Objects.requireNonNull(root);
+    Objects.requireNonNull(localRoots);
+    Objects.requireNonNull(mirrorMaintenance);
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("maxBytes must be positive");
+    }
+    this.root = Path.of(root).toAbsolutePath();
+    this.maxBytes = maxBytes;
+    this.localRoots = List.of(localRoots.split(",")).stream()
+            .map(String::trim)
+            .filter(localRoot -> !localRoot.isEmpty())
+            .map(localRoot -> realPath(Path.of(localRoot)))
+            .toList();
+    this.mirrorMaintenance = mirrorMaintenance;
+  }
+
+
+  /**
+   * Constructs a new RepositoryMirrorStore without maintenance.
+   * @param root the directory holding the mirrors.
+   * @param maxBytes the disk budget of the store, in bytes.
+   * @param localRoots the comma-separated directories under which repositories can be imported in place.
+   */
+  public RepositoryMirrorStore(String root, long maxBytes, String localRoots) {
+    this(root, maxBytes, localRoots, new MirrorMaintenance(false));
+  }
+
+
+  /**
+   * Constructs a new RepositoryMirrorStore that neither imports local repositories in place nor maintains its mirrors.
+   * @param root the directory holding the mirrors.
+   * @param maxBytes the disk budget of the store, in bytes.
+   */
+  public RepositoryMirrorStore(String root, long maxBytes) {
+    this(root, maxBytes, "");
+  }
+
+
+  /**
+   * Opens the mirror of a repository, cloning it if it is not in the store yet and fetching it otherwise.
+   * The mirror cannot be evicted until the returned lease is closed.
+   *
+   * @param gitRepository the repository to open.
+   * @return a lease on the mirror, or null if the repository could not be cloned.
+   * @throws CloneRepositoryException if the mirror could not be created or updated.
+   */
+  public MirrorLease open(GitRepository gitRepository) throws CloneRepositoryException {
+    return open(gitRepository, () -> {});
+  }
+
+
+  /**
+   * Opens the mirror of a repository, cloning it if it is not in the store yet and fetching it otherwise,
+   * and tells the caller once the network transfer returned, before the mirror is maintained.
+   * The mirror cannot be evicted until the returned lease is closed.
+   *
+   * @param gitRepository the repository to open.
+   * @param onTransferred run once the clone or the fetch returned, before the maintenance of the mirror.
+   * @return a lease on the mirror, or null if the repository could not be cloned.
+   * @throws CloneRepositoryException if the mirror could not be created or updated.
+   */
+  public MirrorLease open(GitRepository gitRepository, Runnable onTransferred) throws CloneRepositoryException {
+    Objects.requireNonNull(gitRepository);
+    Objects.requireNonNull(onTransferred);
+    if (gitRepository.fetchScope() == FetchScope.IN_PLACE) {
+      return openInPlace(gitRepository);
+    }
+    var mirror = acquire(mirrorDirectory(gitRepository));
+    var gitCloneManager = new GitCloneManager(gitRepository);
+    Git git = null;
+    try {
+      mirror.updateLock.lock();
+      try {
+        git = isMirror(mirror.directory) ? fetchMirror(gitCloneManager, mirror.directory, onTransferred)
+                : cloneMirror(gitCloneManager, mirror.directory, onTransferred);
+      } finally {
+        mirror.updateLock.unlock();
+      }
+      var size = directorySize(mirror.directory);
+      synchronized (mirror) {
+        mirror.sizeBytes = size;
+      }
+    } finally {
+      if (git == null) {
+        release(mirror);
+      }
+    }
+    return git == null ? null : new MirrorLease(git, () -> release(mirror));
+  }
+
+
+  /**
+   * Deletes the mirror of a repository from the store, unless an analysis is using it.
+   *
+   * @param gitRepository the repository whose mirror is deleted.
+   * @return true if the mirror was deleted or did not exist, false if it is in use.
+   * @throws DeleteRepositoryException if the mirror could not be deleted.
+   */
+  public boolean delete(GitRepository gitRepository) throws DeleteRepositoryException {
+    Objects.requireNonNull(gitRepository);
+    var directory = mirrorDirectory(gitRepository);
+    return evict(mirrors.computeIfAbsent(directory, d -> new Mirror(d, 0)));
+  }
+
+
+  /**
+   * Evicts the least recently used mirrors until the store fits in its budget.
+   * Mirrors left on the disk by a previous run are taken into account as well.
+   * This method is run periodically in the background.
+   */
+  @Scheduled(fixedDelay = "${gitclout.mirror.janitor-interval:5m}", initialDelay = "1m")
+  public void evictLeastRecentlyUsed() {
+    discoverMirrors();
+    var candidates = mirrors.values().stream()
+            .sorted(Comparator.comparingLong(RepositoryMirrorStore::lastAccess))
+            .toList();
+    var used = usedBytes();
+    for (var candidate : candidates) {
+      if (used <= maxBytes) {
+        return;
+      }
+      var size = sizeBytes(candidate);
+      try {
+        if (evict(candidate)) {
+          used -= size;
+          evictionCount.incrementAndGet();
+        }
+      } catch (DeleteRepositoryException e) {
+        logger.error("Failed to evict mirror " + candidate.directory, e);
+      }
+    }
+  }
+
+
+  /**
+   * Returns the number of bytes used by the mirrors of the store.
+   * @return the disk usage of the store.
+   */
+  public long usedBytes() {
+    return mirrors.values().stream().mapToLong(RepositoryMirrorStore::sizeBytes).sum();
+  }
+
+
+  /**
+   * Returns the disk budget of the store.
+   * @return the budget, in bytes.
+   */
+  public long maxBytes() {
+    return maxBytes;
+  }
+
+
+  /**
+   * Returns the number of mirrors in the store.
+   * @return the number of mirrors.
+   */
+  public int mirrorCount() {
+    return mirrors.size();
+  }
+
+
+  /**
+   * Returns the number of mirrors currently used by an analysis.
+   * @return the number of leased mirrors.
+   */
+  public int leasedCount() {
+    return (int) mirrors.values().stream().filter(mirror -> {
+      synchronized (mirror) {
+        return mirror.leases > 0;
+      }
+    }).count();
+  }
+
+
+  /**
+   * Returns the number of mirrors evicted to respect the budget since the start of the application.
+   * @return the number of evictions.
+   */
+  public long evictionCount() {
+    return evictionCount.get();
+  }
+
+
+  /**
+   * Returns the directory of the mirror associated with a repository.
+   * Each fetch scope of a repository has its own mirror, so that a mirror never holds refs outside of its scope.
+   *
+   * @param gitRepository the repository.
+   * @return the path of its mirror, which may not exist yet.
+   */
+  public Path mirrorDirectory(GitRepository gitRepository) {
+    Objects.requireNonNull(gitRepository);
+    var key = gitRepository.normalizedUri();
+    var name = key.substring(key.lastIndexOf('/') + 1).replaceAll("[^A-Za-z0-9._-]", "_");
+    var scope = gitRepository.fetchScope() == FetchScope.ALL ? "" : "-" + gitRepository.fetchScope().name().toLowerCase(Locale.ROOT);
+    return root.resolve(name + scope + "-" + hash(key));
+  }
+
+
+  /**
+   * Opens a repository of the local disk where it is, without copying it.
+   * Such a repository is not part of the store, so it is neither tracked nor evicted.
+   *
+   * @param gitRepository the repository, given by a path or a file uri.
+   * @return a lease on the repository.
+   * @throws CloneRepositoryException if the repository is not under a local root or cannot be opened.
+   */
+  private MirrorLease openInPlace(GitRepository gitRepository) throws CloneRepositoryException {
+    var uri = gitRepository.remoteRepoUri().trim();
+    Path directory;
+    try {
+      directory = (uri.startsWith("file:") ? Path.of(URI.create(uri)) : Path.of(uri)).toRealPath();
+    } catch (IOException | IllegalArgumentException e) {
+      throw new CloneRepositoryException("Local repository not found " + uri, e);
+    }
+    if (localRoots.stream().noneMatch(directory::startsWith)) {
+      throw new CloneRepositoryException("Local repository " + directory + " is not under an allowed local root");
+    }
+    try {
+      return new MirrorLease(Git.open(directory.toFile()), () -> {});
+    } catch (IOException e) {
+      throw new CloneRepositoryException("Failed to open local repository " + directory, e);
+    }
+  }
+
+
+  /**
+   * Fetches the missing objects of a repository into its mirror.
+   *
+   * @param gitCloneManager the clone manager of the repository.
+   * @param directory the directory of the mirror.
+   * @param onTransferred run once the fetch returned.
+   * @return a Git object reading from the mirror.
+   * @throws CloneRepositoryException if the mirror could not be opened or fetched.
+   */
+  private Git fetchMirror(GitCloneManager gitCloneManager, Path directory, Runnable onTransferred) throws CloneRepositoryException {
+    Git git;
+    try {
+      git = Git.open(directory.toFile());
+    } catch (IOException e) {
+      throw new CloneRepositoryException("Failed to open mirror " + directory, e);
+    }
+    try {
+      var fetched = gitCloneManager.fetchInto(git);
+      onTransferred.run();
+      if (fetched) {
+        mirrorMaintenance.maintain(git);
+      }
+      return git;
+    } catch (CloneRepositoryException e) {
+      git.close();
+      throw e;
+    }
+  }
+
+
+  /**
+   * Clones a repository into a staging directory, then moves it into the store.
+   * A clone interrupted halfway is therefore never mistaken for a mirror.
+   *
+   * @param gitCloneManager the clone manager of the repository.
+   * @param directory the final directory of the mirror.
+   * @param onTransferred run once the clone returned.
+   * @return a Git object reading from the mirror, or null if the clone failed.
+   * @throws CloneRepositoryException if the mirror could not be moved into the store.
+   */
+  private Git cloneMirror(GitCloneManager gitCloneManager, Path directory, Runnable onTransferred) throws CloneRepositoryException {
+    var staging = directory.resolveSibling(directory.getFileName() + ".tmp");
+    try {
+      deleteDirectory(staging);
+      deleteDirectory(directory);
+      Files.createDirectories(root);
+      try (var git = gitCloneManager.cloneToDirectory(staging)) {
+        if (git == null) {
+          deleteDirectory(staging);
+          return null;
+        }
+      }
+      onTransferred.run();
+      Files.move(staging, directory, StandardCopyOption.ATOMIC_MOVE);
+      var git = Git.open(directory.toFile());
+      mirrorMaintenance.maintain(git);
+      return git;
+    } catch (IOException e) {
+      throw new CloneRepositoryException("Failed to create mirror " + directory, e);
+    }
+  }
+
+
+  /**
+   * Takes a lease on a mirror, so that it cannot be evicted.
+   *
+   * @param directory the directory of the mirror.
+   * @return the leased mirror.
+   */
+  private Mirror acquire(Path directory) {
+    while (true) {
+      var mirror = mirrors.computeIfAbsent(directory, d -> new Mirror(d, System.currentTimeMillis()));
+      synchronized (mirror) {
+        if (!mirror.deleted) {
+          mirror.leases++;
+          mirror.lastAccess = System.currentTimeMillis();
+          return mirror;
+        }
+      }
+    }
+  }
+
+
+  private void release(Mirror mirror) {
+    synchronized (mirror) {
+      mirror.leases--;
+      mirror.lastAccess = System.currentTimeMillis();
+    }
+  }
+
+
+  /**
+   * Deletes a mirror from the disk if no analysis is using it.
+   *
+   * @param mirror the mirror to delete.
+   * @return true if the mirror was deleted, false if it is in use.
+   * @throws DeleteRepositoryException if the mirror could not be deleted.
+   */
+  private boolean evict(Mirror mirror) throws DeleteRepositoryException {
+    synchronized (mirror) {
+      if (mirror.leases > 0) {
+        return false;
+      }
+      mirror.deleted = true;
+      mirrors.remove(mirror.directory, mirror);
+      try {
+        deleteDirectory(mirror.directory);
+        return true;
+      } catch (IOException e) {
+        throw new DeleteRepositoryException("Failed to delete mirror " + mirror.directory, e);
+      }
+    }
+  }
+
+
+  /**
+   * Registers the mirrors found on the disk that the store does not know yet, e.g. after a restart.
+   */
+  private void discoverMirrors() {
+    if (!Files.isDirectory(root)) {
+      return;
+    }
+    try (Stream<Path> directories = Files.list(root)) {
+      var found = directories
+              .filter(directory -> !directory.getFileName().toString().endsWith(".tmp"))
+              .filter(RepositoryMirrorStore::isMirror)
+              .toList();
+      for (var directory : found) {
+        if (!mirrors.containsKey(directory)) {
+          var mirror = new Mirror(directory, Files.getLastModifiedTime(directory).toMillis());
+          mirror.sizeBytes = directorySize(directory);
+          mirrors.putIfAbsent(directory, mirror);
+        }
+      }
+    } catch (IOException e) {
+      logger.error("Failed to scan the mirror store " + root, e);
+    }
+  }
+
+
+  private static long lastAccess(Mirror mirror) {
+    synchronized (mirror) {
+      return mirror.lastAccess;
+    }
+  }
+
+
+  private static long sizeBytes(Mirror mirror) {
+    synchronized (mirror) {
+      return mirror.deleted ? 0 : mirror.sizeBytes;
+    }
+  }
+
+
+  private static long directorySize(Path directory) {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      return paths.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+
+  private static Path realPath(Path path) {
+    try {
+      return path.toRealPath();
+    } catch (IOException e) {
+      return path.toAbsolutePath().normalize();
+    }
+  }
+
+
+  private static boolean isMirror(Path directory) {
+    return Files.isDirectory(directory) && RepositoryCache.FileKey.isGitRepository(directory.toFile(), FS.DETECTED);
+  }
+
+
+  private static String hash(String key) {
+    try {
+      var digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest, 0, 6);
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+
+  private static void deleteDirectory(Path directory) throws IOException {
+    if (!Files.exists(directory)) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+}
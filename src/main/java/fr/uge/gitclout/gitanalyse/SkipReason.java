@@ -0,0 +1,17 @@
+package fr.uge.gitclout.gitanalyse;
+
+/**
+ * This enum contains the reasons why a file is left out of the analysis before being blamed.
+ * EXCLUDED files match one of the excluded paths, GENERATED and VENDORED files are marked
+ * linguist-generated or linguist-vendored in the .gitattributes of the repository,
+ * OVERSIZED files exceed the maximum blob size and BINARY files do not hold text.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public enum SkipReason {
+  EXCLUDED,
+  GENERATED,
+  VENDORED,
+  OVERSIZED,
+  BINARY
+}
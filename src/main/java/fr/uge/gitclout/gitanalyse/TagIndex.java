@@ -0,0 +1,236 @@
+package fr.uge.gitclout.gitanalyse;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * This class indexes the tags of a repository, read once from a snapshot of its references.
+ * Each tag is peeled to the commit it designates, through the annotated tags it may point to,
+ * so that an analysis looks its tags up in a map instead of reading the references and parsing the commits again.
+ * The tags that do not designate a commit are left out. The index does not see the tags created after it is read.
+ * The tags are sorted by history: a tag comes after the tags of the ancestors of its commit, the others being
+ * sorted by commit time, and the tags of a same commit by name. Each tag also knows its base, the nearest tag
+ * among the ancestors of its commit, so that the interval between a tag and its base is as small as the history allows,
+ * even when tags follow several maintenance lines or are named like v1.9 and v1.10.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public final class TagIndex {
+
+  /**
+   * A tag of the index.
+   * @param name the name of the tag, without "refs/tags/".
+   * @param tagId the object the reference of the tag points to, the annotated tag or the commit itself.
+   * @param commit the commit the tag designates, parsed.
+   * @param base the name of the nearest tag among the ancestors of the commit, a tag of the same commit sorted
+   *             before this one included, or null if the history of the tag has no other tag.
+   */
+  public record Entry(String name, ObjectId tagId, RevCommit commit, String base) {
+
+    public Entry {
+      Objects.requireNonNull(name);
+      Objects.requireNonNull(tagId);
+      Objects.requireNonNull(commit);
+    }
+
+
+    /**
+     * Returns the commit the tag designates.
+     * @return the id of the peeled commit.
+     */
+    public ObjectId commitId() {
+      return commit.getId();
+    }
+
+
+    /**
+     * Returns the tree of the commit the tag designates.
+     * @return the id of the tree.
+     */
+    public ObjectId treeId() {
+      return commit.getTree().getId();
+    }
+
+
+    /**
+     * Returns the time of the commit the tag designates.
+     * @return the commit time, in seconds since the epoch.
+     */
+    public int commitTime() {
+      return commit.getCommitTime();
+    }
+  }
+
+  /**
+   * What the walk sorting the tags remembers of a commit of the history: its tags and its nearest tagged ancestor.
+   */
+  private static final class Node {
+    private final RevCommit commit;
+    private List<String> tags;
+    private Node nearestTagged;
+    private int generation;
+
+    private Node(RevCommit commit) {
+      this.commit = commit;
+    }
+  }
+
+  private final List<Entry> entries;
+  private final Map<String, Entry> byName;
+  private final Map<String, Integer> positions;
+
+  private TagIndex(List<Entry> entries) {
+    this.entries = Collections.unmodifiableList(entries);
+    var byName = new HashMap<String, Entry>();
+    var positions = new HashMap<String, Integer>();
+    for (var entry : entries) {
+      byName.put(entry.name(), entry);
+      positions.put(entry.name(), positions.size());
+    }
+    this.byName = byName;
+    this.positions = positions;
+  }
+
+
+  /**
+   * Reads the tags of a repository.
+   * @param repository the repository.
+   * @return the index of the tags of the repository.
+   * @throws IOException if the references or the commits cannot be read.
+   */
+  public static TagIndex read(Repository repository) throws IOException {
+    Objects.requireNonNull(repository);
+    var tagIds = new HashMap<String, ObjectId>();
+    var commits = new HashMap<String, RevCommit>();
+    try (var revWalk = new RevWalk(repository)) {
+      for (var ref : repository.getRefDatabase().getRefsByPrefix(Constants.R_TAGS)) {
+        var tagId = ref.getObjectId();
+        if (tagId == null) {
+          continue;
+        }
+        if (revWalk.peel(revWalk.parseAny(tagId)) instanceof RevCommit commit) {
+          revWalk.parseHeaders(commit);
+          var name = ref.getName().substring(Constants.R_TAGS.length());
+          tagIds.put(name, tagId.copy());
+          commits.put(name, commit);
+        }
+      }
+    }
+    var entries = new ArrayList<Entry>();
+    var nodes = new HashMap<RevCommit, Node>();
+    try (var historyWalk = new RevWalk(repository)) {
+      historyWalk.sort(RevSort.TOPO, true);
+      historyWalk.sort(RevSort.REVERSE, true);
+      for (var tag : commits.entrySet()) {
+        var commit = historyWalk.parseCommit(tag.getValue());
+        var node = nodes.get(commit);
+        if (node == null) {
+          node = new Node(commit);
+          node.tags = new ArrayList<>();
+          nodes.put(commit, node);
+          historyWalk.markStart(commit);
+        }
+        node.tags.add(tag.getKey());
+      }
+      for (var commit : historyWalk) {
+        var node = nodes.computeIfAbsent(commit, Node::new);
+        for (var parent : commit.getParents()) {
+          var parentNode = nodes.get(parent);
+          node.generation = Math.max(node.generation, parentNode.generation + 1);
+          var candidate = parentNode.tags != null ? parentNode : parentNode.nearestTagged;
+          if (candidate != null && (node.nearestTagged == null || closer(candidate, node.nearestTagged))) {
+            node.nearestTagged = candidate;
+          }
+        }
+        if (node.tags != null) {
+          Collections.sort(node.tags);
+          var base = node.nearestTagged == null ? null : node.nearestTagged.tags.getLast();
+          for (var name : node.tags) {
+            entries.add(new Entry(name, tagIds.get(name), commits.get(name), base));
+            base = name;
+          }
+        }
+      }
+    }
+    return new TagIndex(entries);
+  }
+
+
+  /**
+   * Checks if a tagged ancestor is nearer than another, being further from the roots of the history, or else more recent.
+   */
+  private static boolean closer(Node candidate, Node current) {
+    if (candidate.generation != current.generation) {
+      return candidate.generation > current.generation;
+    }
+    return candidate.commit.getCommitTime() > current.commit.getCommitTime();
+  }
+
+
+  /**
+   * Returns the tags of the index.
+   * @return the tags, sorted by history.
+   */
+  public List<Entry> entries() {
+    return entries;
+  }
+
+
+  /**
+   * Looks a tag up by its name.
+   * @param name the name of the tag, without "refs/tags/".
+   * @return the tag, or null if the index does not have it.
+   */
+  public Entry get(String name) {
+    return byName.get(Objects.requireNonNull(name));
+  }
+
+
+  /**
+   * Returns the position of a tag in the history order of the index.
+   * @param name the name of the tag.
+   * @return the position of the tag, or Integer.MAX_VALUE if the index does not have it.
+   */
+  public int position(String name) {
+    return positions.getOrDefault(Objects.requireNonNull(name), Integer.MAX_VALUE);
+  }
+
+
+  /**
+   * Returns the nearest tag of a set among the ancestors of the commit of a tag, following the bases of the tags.
+   * @param name the name of the tag.
+   * @param among the names of the tags that can be the base.
+   * @return the name of the base, or null if no tag of the set is in the history of the tag.
+   */
+  public String baseAmong(String name, Set<String> among) {
+    Objects.requireNonNull(among);
+    var entry = get(name);
+    var base = entry == null ? null : entry.base();
+    while (base != null && !among.contains(base)) {
+      base = byName.get(base).base();
+    }
+    return base;
+  }
+
+
+  /**
+   * Returns the number of tags of the index.
+   * @return the number of tags.
+   */
+  public int size() {
+    return entries.size();
+  }
+}
@@ -2,6 +2,7 @@ package fr.uge.gitclout.gitanalyse;
 
 import fr.uge.gitclout.database.Tag;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -14,6 +15,25 @@ public class TagManagementService {
 
   public TagManagementService() {}
   
+  /**
+   * Gives their full names back to the old tags saved under the last part of their name, like 2.0 for release/2.0,
+   * so that they are resolved in the repository like the updated tags.
+   *
+   * @param oldTags     The list of old tags, renamed in place.
+   * @param updateTags  The list of updated tags.
+   */
+  void restoreFullNames(List<Tag> oldTags, List<Tag> updateTags) {
+    Map<String, Tag> updateTagsBySha1 = updateTags.stream()
+            .collect(Collectors.toMap(Tag::getSha1, tag -> tag, (first, second) -> first));
+    for (Tag oldTag : oldTags) {
+      var updateTag = updateTagsBySha1.get(oldTag.getSha1());
+      if (updateTag != null && updateTag.getName().endsWith("/" + oldTag.getName())) {
+        oldTag.setName(updateTag.getName());
+      }
+    }
+  }
+
+
   /**
    * Updates the list of tags by deleting old tags that are not present in the updated tags.
    *
@@ -0,0 +1,110 @@
+package fr.uge.gitclout.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used to test the AnalysisJobs class.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public class AnalysisJobsTest {
+
+  @Test
+  void reportsThePhasesAndTheResult() throws Exception {
+    var inFlightAnalyses = new InFlightAnalyses<String>();
+    try (var analysisJobs = new AnalysisJobs<String>(Duration.ofHours(1))) {
+      var analyzing = new CountDownLatch(1);
+      var release = new CountDownLatch(1);
+      var job = analysisJobs.submit("https://example.com/repo", current -> inFlightAnalyses.run("repo", "", current, flight -> {
+        flight.enter(AnalysisJob.Phase.ANALYZING);
+        flight.progress(1, 4);
+        analyzing.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+        return "result";
+      }));
+      analyzing.await();
+      assertSame(job, analysisJobs.get(job.id()));
+      assertEquals(AnalysisJob.Phase.ANALYZING, job.phase());
+      assertEquals(25, job.percent());
+      assertNotNull(job.startedAt());
+      assertNull(job.finishedAt());
+      assertEquals(1, analysisJobs.activeCount());
+      release.countDown();
+      assertEquals("result", job.await());
+      assertEquals(AnalysisJob.Phase.DONE, job.phase());
+      assertEquals(100, job.percent());
+      assertEquals("result", job.resultNow());
+      assertNotNull(job.finishedAt());
+      assertEquals(0, analysisJobs.activeCount());
+      assertFalse(job.cancel());
+    }
+  }
+
+
+  @Test
+  void reportsTheFailure() throws Exception {
+    try (var analysisJobs = new AnalysisJobs<String>(Duration.ofHours(1))) {
+      var job = analysisJobs.submit("https://example.com/repo", current -> {
+        throw new IOException("clone failed");
+      });
+      var exception = assertThrows(IOException.class, job::await);
+      assertEquals("clone failed", exception.getMessage());
+      assertEquals(AnalysisJob.Phase.FAILED, job.phase());
+      assertEquals("clone failed", job.error());
+      assertNull(job.resultNow());
+    }
+  }
+
+  @Test
+  void cancelsTheJobWithoutInterruptingItsAnalysis() throws Exception {
+    var inFlightAnalyses = new InFlightAnalyses<String>();
+    try (var analysisJobs = new AnalysisJobs<String>(Duration.ofHours(1))) {
+      var analyzing = new CountDownLatch(1);
+      var stop = new CountDownLatch(1);
+      var stopped = new CountDownLatch(1);
+      var interrupted = new boolean[1];
+      var job = analysisJobs.submit("https://example.com/repo", current -> inFlightAnalyses.run("repo", "", current, flight -> {
+        flight.enter(AnalysisJob.Phase.ANALYZING);
+        flight.onCancel(stop::countDown);
+        analyzing.countDown();
+        while (stop.getCount() > 0) {
+          interrupted[0] |= Thread.currentThread().isInterrupted();
+          Thread.onSpinWait();
+        }
+        stopped.countDown();
+        throw new InterruptedIOException("The analysis was cancelled");
+      }));
+      analyzing.await();
+      assertTrue(job.cancel());
+      assertThrows(InterruptedIOException.class, job::await);
+      assertEquals(AnalysisJob.Phase.CANCELLED, job.phase());
+      stopped.await();
+      assertFalse(interrupted[0]);
+      assertFalse(job.cancel());
+    }
+  }
+
+
+  @Test
+  void forgetsTheFinishedJobsAfterTheRetention() throws Exception {
+    try (var analysisJobs = new AnalysisJobs<String>(Duration.ZERO)) {
+      var first = analysisJobs.submit("https://example.com/first", current -> "first");
+      first.await();
+      Thread.sleep(10);
+      var second = analysisJobs.submit("https://example.com/second", current -> "second");
+      assertNull(analysisJobs.get(first.id()));
+      assertSame(second, analysisJobs.get(second.id()));
+    }
+  }
+}
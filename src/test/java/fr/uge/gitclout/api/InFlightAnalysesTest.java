@@ -0,0 +1,263 @@
+package fr.uge.gitclout.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used to test the InFlightAnalyses class.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public class InFlightAnalysesTest {
+
+  @Test
+  void concurrentRequestsShareOneAnalysis() throws Exception {
+    var inFlightAnalyses = new InFlightAnalyses<String>();
+    var runs = new AtomicInteger();
+    var started = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    try (var executor = Executors.newFixedThreadPool(4)) {
+      var results = new ArrayList<Future<String>>();
+      results.add(executor.submit(() -> inFlightAnalyses.run("repo", "", null, flight -> {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        return "result-" + runs.incrementAndGet();
+      })));
+      started.await();
+      var joining = new CountDownLatch(3);
+      for (var i = 0; i < 3; i++) {
+        results.add(executor.submit(() -> {
+          joining.countDown();
+          return inFlightAnalyses.run("repo", "", null, flight -> "result-" + runs.incrementAndGet());
+        }));
+      }
+      joining.await();
+      Thread.sleep(200);
+      release.countDown();
+      for (var result : results) {
+        assertEquals("result-1", result.get());
+      }
+    }
+    assertEquals(1, runs.get());
+    assertEquals("result-2", inFlightAnalyses.run("repo", "", null, flight -> "result-" + runs.incrementAndGet()));
+  }
+
+  @Test
+  void failureIsSharedThenForgotten() throws Exception {
+    var inFlightAnalyses = new InFlightAnalyses<String>();
+    assertThrows(IOException.class, () -> inFlightAnalyses.run("repo", "", null, flight -> {
+      throw new IOException("clone failed");
+    }));
+    assertEquals("ok", inFlightAnalyses.run("repo", "", null, flight -> "ok"));
+  }
+
+  @Test
+  void otherSettingsWaitForTheRunningAnalysis() throws Exception {
+    var inFlightAnalyses = new InFlightAnalyses<String>();
+    var started = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var running = new AtomicInteger();
+    var overlapped = new AtomicInteger();
+    try (var executor = Executors.newFixedThreadPool(2)) {
+      var blame = executor.submit(() -> inFlightAnalyses.run("repo", "BLAME", null, flight -> {
+        running.incrementAndGet();
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        running.decrementAndGet();
+        return "blame";
+      }));
+      started.await();
+      var diff = executor.submit(() -> inFlightAnalyses.run("repo", "DIFF", null, flight -> {
+        if (running.get() != 0) {
+          overlapped.incrementAndGet();
+        }
+        return "diff";
+      }));
+      Thread.sleep(200);
+      assertFalse(diff.isDone());
+      release.countDown();
+      assertEquals("blame", blame.get());
+      assertEquals("diff", diff.get());
+    }
+    assertEquals(0, overlapped.get());
+    assertEquals("blame again", inFlightAnalyses.run("repo", "BLAME", null, flight -> "blame again"));
+  }
+
+
+  private static void awaitPhase(AnalysisJob<String> job, AnalysisJob.Phase phase) throws InterruptedException {
+    while (job.phase() != phase) {
+      Thread.sleep(10);
+    }
+  }
+
+
+  @Test
+  void joinedJobsFollowTheAnalysis() throws Exception {
+    var inFlightAnalyses = new InFlightAnalyses<String>();
+    var analyzing = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    try (var analysisJobs = new AnalysisJobs<String>(Duration.ofHours(1))) {
+      var owner = analysisJobs.submit("https://example.com/repo", job -> inFlightAnalyses.run("repo", "", job, flight -> {
+        flight.enter(AnalysisJob.Phase.ANALYZING);
+        flight.progress(1, 2);
+        analyzing.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+        return "result";
+      }));
+      analyzing.await();
+      var joined = analysisJobs.submit("https://example.com/repo", job -> inFlightAnalyses.run("repo", "", job, flight -> "other"));
+      awaitPhase(joined, AnalysisJob.Phase.ANALYZING);
+      assertEquals(50, joined.percent());
+      release.countDown();
+      assertEquals("result", owner.await());
+      assertEquals("result", joined.await());
+      assertEquals(AnalysisJob.Phase.DONE, joined.phase());
+    }
+  }
+
+
+  @Test
+  void cancellingTheOwnerKeepsTheAnalysisForTheJoinedJobs() throws Exception {
+    var inFlightAnalyses = new InFlightAnalyses<String>();
+    var analyzing = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var stop = new CountDownLatch(1);
+    try (var analysisJobs = new AnalysisJobs<String>(Duration.ofHours(1))) {
+      var owner = analysisJobs.submit("https://example.com/repo", job -> inFlightAnalyses.run("repo", "", job, flight -> {
+        flight.enter(AnalysisJob.Phase.ANALYZING);
+        flight.onCancel(stop::countDown);
+        analyzing.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+        return "result";
+      }));
+      analyzing.await();
+      var joined = analysisJobs.submit("https://example.com/repo", job -> inFlightAnalyses.run("repo", "", job, flight -> "other"));
+      awaitPhase(joined, AnalysisJob.Phase.ANALYZING);
+      assertTrue(owner.cancel());
+      assertEquals(AnalysisJob.Phase.CANCELLED, owner.phase());
+      assertEquals(AnalysisJob.Phase.ANALYZING, joined.phase());
+      release.countDown();
+      assertEquals("result", joined.await());
+      assertThrows(InterruptedIOException.class, owner::await);
+      assertEquals(1, stop.getCount());
+    }
+  }
+
+
+  @Test
+  void theAnalysisStopsWhenItsLastJobIsCancelled() throws Exception {
+    var inFlightAnalyses = new InFlightAnalyses<String>();
+    var analyzing = new CountDownLatch(1);
+    var stop = new CountDownLatch(1);
+    try (var analysisJobs = new AnalysisJobs<String>(Duration.ofHours(1))) {
+      var owner = analysisJobs.submit("https://example.com/repo", job -> inFlightAnalyses.run("repo", "", job, flight -> {
+        flight.enter(AnalysisJob.Phase.ANALYZING);
+        flight.onCancel(stop::countDown);
+        analyzing.countDown();
+        try {
+          stop.await();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+        throw new InterruptedIOException("The analysis was cancelled");
+      }));
+      analyzing.await();
+      var joined = analysisJobs.submit("https://example.com/repo", job -> inFlightAnalyses.run("repo", "", job, flight -> "other"));
+      awaitPhase(joined, AnalysisJob.Phase.ANALYZING);
+      assertTrue(joined.cancel());
+      assertEquals(1, stop.getCount());
+      assertTrue(owner.cancel());
+      assertTrue(stop.await(5, TimeUnit.SECONDS));
+      assertThrows(InterruptedIOException.class, joined::await);
+      assertThrows(InterruptedIOException.class, owner::await);
+    }
+  }
+
+
+  @Test
+  void interruptsTheClone() throws Exception {
+    var inFlightAnalyses = new InFlightAnalyses<String>();
+    var cloning = new CountDownLatch(1);
+    var interrupted = new CountDownLatch(1);
+    try (var analysisJobs = new AnalysisJobs<String>(Duration.ofHours(1))) {
+      var job = analysisJobs.submit("https://example.com/repo", current -> inFlightAnalyses.run("repo", "", current, flight -> {
+        flight.enter(AnalysisJob.Phase.CLONING);
+        cloning.countDown();
+        try {
+          Thread.sleep(60_000);
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+          throw new InterruptedIOException("clone interrupted");
+        }
+        flight.enter(AnalysisJob.Phase.ANALYZING);
+        return "result";
+      }));
+      cloning.await();
+      assertTrue(job.cancel());
+      assertThrows(InterruptedIOException.class, job::await);
+      assertEquals(AnalysisJob.Phase.CANCELLED, job.phase());
+      assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+  }
+
+
+  @Test
+  void doesNotInterruptTheMaintenance() throws Exception {
+    var inFlightAnalyses = new InFlightAnalyses<String>();
+    var maintaining = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var interrupted = new boolean[1];
+    var stoppedBeforeAnalyzing = new CountDownLatch(1);
+    try (var analysisJobs = new AnalysisJobs<String>(Duration.ofHours(1))) {
+      var job = analysisJobs.submit("https://example.com/repo", current -> inFlightAnalyses.run("repo", "", current, flight -> {
+        flight.enter(AnalysisJob.Phase.CLONING);
+        flight.maintaining();
+        maintaining.countDown();
+        while (release.getCount() > 0) {
+          interrupted[0] |= Thread.currentThread().isInterrupted();
+          Thread.onSpinWait();
+        }
+        try {
+          flight.enter(AnalysisJob.Phase.ANALYZING);
+        } catch (InterruptedIOException e) {
+          stoppedBeforeAnalyzing.countDown();
+          throw e;
+        }
+        return "result";
+      }));
+      maintaining.await();
+      assertEquals(AnalysisJob.Phase.MAINTAINING, job.phase());
+      assertTrue(job.cancel());
+      release.countDown();
+      assertTrue(stoppedBeforeAnalyzing.await(5, TimeUnit.SECONDS));
+      assertFalse(interrupted[0]);
+    }
+  }
+}
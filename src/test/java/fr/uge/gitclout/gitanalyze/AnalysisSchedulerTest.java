@@ -0,0 +1,64 @@
+package fr.uge.gitclout.gitanalyze;
+
+import fr.uge.gitclout.gitanalyse.AnalysisScheduler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used to test the AnalysisScheduler class.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public class AnalysisSchedulerTest {
+
+  private static Callable<Integer> task(AtomicInteger running, AtomicInteger maxRunning) {
+    return () -> {
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      Thread.sleep(20);
+      running.decrementAndGet();
+      return 1;
+    };
+  }
+
+  @Test
+  void concurrencyIsLimitedGloballyAndPerRepository() throws InterruptedException, ExecutionException {
+    try (var scheduler = new AnalysisScheduler(3, 2); var callers = Executors.newFixedThreadPool(2)) {
+      var running = new AtomicInteger();
+      var maxRunning = new AtomicInteger();
+      var lanes = new ArrayList<Future<Integer>>();
+      for (var l = 0; l < 2; l++) {
+        var lane = scheduler.lane();
+        var laneRunning = new AtomicInteger();
+        var laneMaxRunning = new AtomicInteger();
+        lanes.add(callers.submit(() -> {
+          var tasks = new ArrayList<Callable<Integer>>();
+          for (var i = 0; i < 10; i++) {
+            var counted = task(laneRunning, laneMaxRunning);
+            tasks.add(() -> task(running, maxRunning).call() + counted.call() - 1);
+          }
+          var sum = 0;
+          for (var future : lane.invokeAll(tasks)) {
+            sum += future.get();
+          }
+          assertTrue(laneMaxRunning.get() <= 2);
+          return sum;
+        }));
+      }
+      for (var lane : lanes) {
+        assertEquals(10, lane.get());
+      }
+      assertTrue(maxRunning.get() <= 3);
+      assertEquals(0, scheduler.activeCount());
+      assertEquals(0, scheduler.queuedCount());
+      assertEquals(20, scheduler.completedCount());
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package fr.uge.gitclout.gitanalyze;
+
+import fr.uge.gitclout.database.Contribution;
+import fr.uge.gitclout.database.Tag;
+import fr.uge.gitclout.gitanalyse.*;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used to test that an analysis borrows the readers of its session instead of opening new ones for each file.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public class AnalysisSessionTest {
+
+  private static LocalRepository repository() throws Exception {
+    var local = LocalRepository.create();
+    for (var file = 0; file < 50; file++) {
+      local.write("src/File" + file + ".java", "class File" + file + " {}\n");
+    }
+    local.commit("Alice", "first");
+    local.tag("v1");
+    for (var file = 0; file < 50; file += 2) {
+      local.write("src/File" + file + ".java", "class File" + file + " {}\nclass Other" + file + " {}\n");
+    }
+    local.commit("Bob", "second");
+    local.tag("v2");
+    return local;
+  }
+
+  private static int openHandles(ContributionAnalyzer analyzer) throws Exception {
+    var field = ContributionAnalyzer.class.getDeclaredField("session");
+    field.setAccessible(true);
+    var session = field.get(analyzer);
+    Method size = session.getClass().getDeclaredMethod("size");
+    size.setAccessible(true);
+    return (int) size.invoke(session);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Contribution> analyze(ContributionAnalyzer analyzer) throws Exception {
+    Method method = ContributionAnalyzer.class.getDeclaredMethod("analyzeContributionsForTags", List.class);
+    method.setAccessible(true);
+    return (List<Contribution>) method.invoke(analyzer, List.of(new Tag("v1"), new Tag("v2")));
+  }
+
+  @Test
+  void reusesAndReleasesTheHandles() throws Exception {
+    try (var local = repository(); var scheduler = new AnalysisScheduler(2, 2)) {
+      var repo = new GitRepository(local.directory().toUri().toString());
+      var analyzer = new ContributionAnalyzer(null, local.git(), new GitAnalysisService(repo, local.git(), new GitCloneManager(repo)),
+              AnalysisOptions.of(scheduler.lane()));
+      var first = analyze(analyzer);
+      var handles = openHandles(analyzer);
+      assertTrue(handles >= 1 && handles <= 3, "handles: " + handles);
+      analyzer.close();
+      assertEquals(0, openHandles(analyzer));
+      var second = analyze(analyzer);
+      assertEquals(first.size(), second.size());
+      for (var i = 0; i < first.size(); i++) {
+        assertEquals(first.get(i).getContributor().getName(), second.get(i).getContributor().getName());
+        assertEquals(first.get(i).getLanguageMap(), second.get(i).getLanguageMap());
+      }
+      analyzer.close();
+      assertEquals(0, openHandles(analyzer));
+    }
+  }
+}
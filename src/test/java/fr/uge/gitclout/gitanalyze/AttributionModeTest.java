@@ -0,0 +1,108 @@
+package fr.uge.gitclout.gitanalyze;
+
+import fr.uge.gitclout.database.Contribution;
+import fr.uge.gitclout.database.Tag;
+import fr.uge.gitclout.gitanalyse.*;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used to compare the BLAME and DIFF attribution modes of the ContributionAnalyzer class
+ * on generated repositories.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public class AttributionModeTest {
+
+  private static final AnalysisScheduler scheduler = new AnalysisScheduler(2, 2);
+
+  @AfterAll
+  static void closeScheduler() {
+    scheduler.close();
+  }
+
+  private static final String[] AUTHORS = {"Alice", "Bob", "Carol"};
+  private static final String[] FILES = {"src/Main.java", "tool.py", "lib/util.c"};
+  private static final int TAGS = 4;
+
+  private static LocalRepository generate(boolean rewrite) throws IOException, GitAPIException {
+    var random = new Random(42);
+    var local = LocalRepository.create();
+    var contents = new HashMap<String, List<String>>();
+    var counter = 0;
+    for (var tag = 1; tag <= TAGS; tag++) {
+      for (var commit = 0; commit < 6; commit++) {
+        var file = FILES[random.nextInt(FILES.length)];
+        var lines = contents.computeIfAbsent(file, __ -> new ArrayList<>());
+        if (rewrite && !lines.isEmpty()) {
+          lines.set(random.nextInt(lines.size()), "rewritten(" + counter++ + ");");
+        }
+        for (var i = 0; i < 3; i++) {
+          lines.add("line(" + counter++ + ");");
+        }
+        local.write(file, String.join("\n", lines) + "\n").commit(AUTHORS[random.nextInt(AUTHORS.length)], "commit " + counter);
+      }
+      local.tag("v" + tag);
+    }
+    return local;
+  }
+
+  private static List<Map<String, Map<LanguageName, Integer>>> analyze(LocalRepository local, AttributionMode attributionMode) throws Exception {
+    var repo = new GitRepository(local.directory().toUri().toString());
+    var gitAnalysisService = new GitAnalysisService(repo, local.git(), new GitCloneManager(repo));
+    var analyzer = new ContributionAnalyzer(null, local.git(), gitAnalysisService, AnalysisOptions.of(scheduler.lane()).withAttributionMode(attributionMode));
+    var result = new ArrayList<Map<String, Map<LanguageName, Integer>>>();
+    result.add(byContributor(Intervals.analyze(analyzer, new Tag("v1"))));
+    for (var tag = 1; tag < TAGS; tag++) {
+      result.add(byContributor(Intervals.analyze(analyzer, new Tag("v" + tag), new Tag("v" + (tag + 1)))));
+    }
+    return result;
+  }
+
+  private static Map<String, Map<LanguageName, Integer>> byContributor(List<Contribution> contributions) {
+    var result = new HashMap<String, Map<LanguageName, Integer>>();
+    for (var contribution : contributions) {
+      if (!contribution.getLanguageMap().isEmpty()) {
+        result.put(contribution.getContributor().getName(), contribution.getLanguageMap());
+      }
+    }
+    return result;
+  }
+
+  private static int total(Map<String, Map<LanguageName, Integer>> contributions) {
+    return contributions.values().stream().flatMap(languages -> languages.values().stream()).mapToInt(Integer::intValue).sum();
+  }
+
+  @Test
+  void modesAgreeWhenEveryAddedLineSurvives() throws Exception {
+    try (var local = generate(false)) {
+      assertEquals(analyze(local, AttributionMode.BLAME), analyze(local, AttributionMode.DIFF));
+    }
+  }
+
+  @Test
+  void diffOvercountsTheRewrittenLines() throws Exception {
+    try (var local = generate(true)) {
+      var blame = analyze(local, AttributionMode.BLAME);
+      var diff = analyze(local, AttributionMode.DIFF);
+      var overcount = 0;
+      for (var i = 0; i < blame.size(); i++) {
+        var blameTotal = total(blame.get(i));
+        var diffTotal = total(diff.get(i));
+        assertTrue(diffTotal >= blameTotal, "v" + (i + 1) + ": diff " + diffTotal + " < blame " + blameTotal);
+        overcount += diffTotal - blameTotal;
+      }
+      assertTrue(overcount > 0);
+    }
+  }
+}
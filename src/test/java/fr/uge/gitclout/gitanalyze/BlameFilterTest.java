@@ -0,0 +1,101 @@
+package fr.uge.gitclout.gitanalyze;
+
+import fr.uge.gitclout.database.Tag;
+import fr.uge.gitclout.gitanalyse.*;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used to test the files the BlameFilter class leaves out of the analysis of a local repository.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public class BlameFilterTest {
+
+  private static final AnalysisScheduler scheduler = new AnalysisScheduler(2, 2);
+
+  @AfterAll
+  static void closeScheduler() {
+    scheduler.close();
+  }
+
+  private static LocalRepository repository() throws IOException, GitAPIException {
+    var local = LocalRepository.create();
+    local.write(".gitattributes", "gen/** linguist-generated\nthird_party/** linguist-vendored=true\n")
+            .write("src/Main.java", "class Main {}\n")
+            .write("gen/Parser.java", "class Parser {}\nclass Lexer {}\n")
+            .write("third_party/lib.c", "int lib;\n")
+            .write("dist/app.min.js", "var a=1;\n")
+            .write("assets/logo.png", "PNG\u0000\u0001\u0002\n")
+            .write("data/big.py", "x = 1\n".repeat(200))
+            .commit("Alice", "first");
+    local.tag("v1");
+    local.write("gen/Parser.java", "class Parser {}\nclass Lexer {}\nclass Token {}\n")
+            .write("src/Main.java", "class Main {}\nclass Other {}\n")
+            .commit("Bob", "second");
+    local.tag("v2");
+    return local;
+  }
+
+  private static Map<String, Map<LanguageName, Integer>> analyze(ContributionAnalyzer analyzer, Tag... tags) throws Exception {
+    var contributions = tags.length == 1 ? Intervals.analyze(analyzer, tags[0]) : Intervals.analyze(analyzer, tags[0], tags[1]);
+    var result = new HashMap<String, Map<LanguageName, Integer>>();
+    for (var contribution : contributions) {
+      result.put(contribution.getContributor().getName(), contribution.getLanguageMap());
+    }
+    return result;
+  }
+
+  private static ContributionAnalyzer analyzer(LocalRepository local, AttributionMode attributionMode) {
+    var repo = new GitRepository(local.directory().toUri().toString());
+    var gitAnalysisService = new GitAnalysisService(repo, local.git(), new GitCloneManager(repo));
+    var blameFilter = new BlameFilter(1024, List.of("**/*.min.js"));
+    return new ContributionAnalyzer(null, local.git(), gitAnalysisService,
+            AnalysisOptions.of(scheduler.lane()).withAttributionMode(attributionMode).withBlameFilter(blameFilter));
+  }
+
+  @Test
+  void skipsFilesBeforeBlame() throws Exception {
+    try (var local = repository()) {
+      var analyzer = analyzer(local, AttributionMode.BLAME);
+      assertEquals(Map.of("Alice", Map.of(LanguageName.JAVA, 1, LanguageName.OTHER, 2)),
+              analyze(analyzer, new Tag("v1")));
+      assertEquals(Map.of("Bob", Map.of(LanguageName.JAVA, 1)),
+              analyze(analyzer, new Tag("v1"), new Tag("v2")));
+      assertEquals(Map.of(SkipReason.EXCLUDED, 1L, SkipReason.GENERATED, 2L, SkipReason.VENDORED, 1L,
+              SkipReason.OVERSIZED, 1L, SkipReason.BINARY, 1L), analyzer.getSkippedFiles());
+    }
+  }
+
+  @Test
+  void diffModeSkipsTheSameFiles() throws Exception {
+    try (var local = repository()) {
+      var blame = analyzer(local, AttributionMode.BLAME);
+      var diff = analyzer(local, AttributionMode.DIFF);
+      assertEquals(analyze(blame, new Tag("v1")), analyze(diff, new Tag("v1")));
+      assertEquals(analyze(blame, new Tag("v1"), new Tag("v2")), analyze(diff, new Tag("v1"), new Tag("v2")));
+    }
+  }
+
+  @Test
+  void matchesExcludedPaths() {
+    var blameFilter = new BlameFilter().excluding(List.of("vendor/**", "**/*.lock"));
+    assertTrue(blameFilter.isExcluded("vendor/a/b.js"));
+    assertTrue(blameFilter.isExcluded("Cargo.lock"));
+    assertTrue(blameFilter.isExcluded("sub/Gemfile.lock"));
+    assertFalse(blameFilter.isExcluded("src/vendor.js"));
+  }
+
+  @Test
+  void rejectsInvalidGlobs() {
+    assertThrows(IllegalArgumentException.class, () -> new BlameFilter().excluding(List.of("src/[a")));
+  }
+}
@@ -0,0 +1,200 @@
+package fr.uge.gitclout.gitanalyze;
+
+import fr.uge.gitclout.gitanalyse.BlameStore;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used to test the BlameStore class.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public class BlameStoreTest {
+
+  private static final int UNKNOWN = -1;
+
+  private static ObjectId id(int value) {
+    return ObjectId.fromString("%040x".formatted(value));
+  }
+
+  /**
+   * The contributor dictionary, the store and their methods used by the analysis are package-private.
+   */
+  private static final class Dictionary {
+    private static final Class<?> TYPE;
+    private static final Method ID_OF;
+    private static final Method NAME;
+    private static final Method EMAIL;
+    private static final Method GET;
+    private static final Method PUT;
+
+    static {
+      try {
+        TYPE = Class.forName("fr.uge.gitclout.gitanalyse.ContributorDictionary");
+        ID_OF = TYPE.getDeclaredMethod("idOf", String.class, String.class);
+        NAME = TYPE.getDeclaredMethod("name", int.class);
+        EMAIL = TYPE.getDeclaredMethod("email", int.class);
+        GET = BlameStore.class.getDeclaredMethod("get", ObjectId.class, ObjectId.class, TYPE);
+        PUT = BlameStore.class.getDeclaredMethod("put", ObjectId.class, ObjectId.class, int[].class, TYPE);
+        for (var method : List.of(ID_OF, NAME, EMAIL, GET, PUT)) {
+          method.setAccessible(true);
+        }
+      } catch (ReflectiveOperationException e) {
+        throw new AssertionError(e);
+      }
+    }
+
+    private final Object instance;
+
+    private Dictionary() throws ReflectiveOperationException {
+      var constructor = TYPE.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      instance = constructor.newInstance();
+    }
+
+    private int idOf(String name) throws ReflectiveOperationException {
+      return (int) ID_OF.invoke(instance, name, name.toLowerCase() + "@example.com");
+    }
+
+    private String name(int id) throws ReflectiveOperationException {
+      return (String) NAME.invoke(instance, id);
+    }
+
+    private String email(int id) throws ReflectiveOperationException {
+      return (String) EMAIL.invoke(instance, id);
+    }
+
+    private int[] get(BlameStore store, ObjectId blobId, ObjectId commitId) throws ReflectiveOperationException {
+      return (int[]) GET.invoke(store, blobId, commitId, instance);
+    }
+
+    private void put(BlameStore store, ObjectId blobId, ObjectId commitId, int... authors) throws ReflectiveOperationException {
+      PUT.invoke(store, blobId, commitId, authors, instance);
+    }
+  }
+
+  @Test
+  void blamesSurviveAReopen() throws Exception {
+    var root = Files.createTempDirectory("git_blames_").toString();
+    try (var store = new BlameStore(root, 1 << 20)) {
+      var dictionary = new Dictionary();
+      var alice = dictionary.idOf("Alice");
+      var bob = dictionary.idOf("Bob");
+      dictionary.put(store, id(1), id(2), alice, alice, UNKNOWN, bob, alice);
+      assertNull(dictionary.get(store, id(1), id(3)));
+    }
+    try (var store = new BlameStore(root, 1 << 20)) {
+      assertEquals(1, store.entryCount());
+      var dictionary = new Dictionary();
+      dictionary.idOf("Carol");
+      var authors = dictionary.get(store, id(1), id(2));
+      assertEquals(5, authors.length);
+      assertEquals("Alice", dictionary.name(authors[0]));
+      assertEquals("alice@example.com", dictionary.email(authors[1]));
+      assertEquals(UNKNOWN, authors[2]);
+      assertEquals("Bob", dictionary.name(authors[3]));
+      assertEquals(authors[0], authors[4]);
+      assertEquals(1, store.hitCount());
+    }
+  }
+
+  @Test
+  void compactionKeepsTheRecentBlames() throws Exception {
+    try (var store = new BlameStore(Files.createTempDirectory("git_blames_").toString(), 1024)) {
+      var dictionary = new Dictionary();
+      var alice = dictionary.idOf("Alice");
+      for (var i = 0; i < 50; i++) {
+        dictionary.put(store, id(i), id(i), alice, alice);
+      }
+      assertTrue(store.compactionCount() > 0);
+      assertTrue(store.sizeBytes() <= store.maxBytes());
+      assertNotNull(dictionary.get(store, id(49), id(49)));
+      assertNull(dictionary.get(store, id(0), id(0)));
+    }
+  }
+
+  private static void flipLastByte(Path file) throws IOException {
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      var position = channel.size() - 1;
+      var buffer = ByteBuffer.allocate(1);
+      channel.read(buffer, position);
+      channel.write(buffer.flip().put(0, (byte) ~buffer.get(0)), position);
+    }
+  }
+
+  @Test
+  void aCorruptedBlameIsAMiss() throws Exception {
+    var root = Files.createTempDirectory("git_blames_");
+    var dictionary = new Dictionary();
+    var alice = dictionary.idOf("Alice");
+    try (var store = new BlameStore(root.toString(), 1 << 20)) {
+      dictionary.put(store, id(1), id(1), alice, alice);
+      dictionary.put(store, id(2), id(2), alice, UNKNOWN);
+      flipLastByte(root.resolve("blames.dat"));
+      assertNull(dictionary.get(store, id(2), id(2)));
+      assertEquals(1, store.missCount());
+      assertEquals(1, store.entryCount());
+      assertArrayEquals(new int[] {alice, alice}, dictionary.get(store, id(1), id(1)));
+    }
+    try (var store = new BlameStore(root.toString(), 1 << 20)) {
+      assertEquals(1, store.entryCount());
+      assertNull(dictionary.get(store, id(2), id(2)));
+      dictionary.put(store, id(2), id(2), alice, UNKNOWN);
+      assertArrayEquals(new int[] {alice, UNKNOWN}, dictionary.get(store, id(2), id(2)));
+    }
+  }
+
+  @Test
+  void aFileInAnotherFormatIsEmptied() throws IOException {
+    var root = Files.createTempDirectory("git_blames_");
+    Files.write(root.resolve("blames.dat"), new byte[] {0, 0, 0, 40, 1, 2, 3});
+    try (var store = new BlameStore(root.toString(), 1 << 20)) {
+      assertEquals(0, store.entryCount());
+      assertEquals(Integer.BYTES, store.sizeBytes());
+    }
+  }
+
+  @Test
+  void blamesAreReadConcurrently() throws Exception {
+    var dictionary = new Dictionary();
+    var alice = dictionary.idOf("Alice");
+    try (var store = new BlameStore(Files.createTempDirectory("git_blames_").toString(), 1 << 20)) {
+      var threads = new ArrayList<Thread>();
+      var failures = new ConcurrentLinkedQueue<Throwable>();
+      for (var t = 0; t < 4; t++) {
+        var first = t * 100;
+        threads.add(Thread.ofPlatform().start(() -> {
+          try {
+            for (var i = first; i < first + 100; i++) {
+              dictionary.put(store, id(i), id(i), alice, UNKNOWN, alice);
+              for (var j = first; j <= i; j++) {
+                assertArrayEquals(new int[] {alice, UNKNOWN, alice}, dictionary.get(store, id(j), id(j)));
+              }
+            }
+          } catch (Throwable e) {
+            failures.add(e);
+          }
+        }));
+      }
+      for (var thread : threads) {
+        thread.join();
+      }
+      assertEquals(List.of(), List.copyOf(failures));
+      assertEquals(400, store.entryCount());
+      assertEquals(0, store.missCount());
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package fr.uge.gitclout.gitanalyze;
+
+import fr.uge.gitclout.gitanalyse.*;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used to test the CommentClassifier class.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public class CommentClassifierTest {
+
+  private static final String[] JAVA_LINES = {"int a = 0;", "// comment", "/* comment */", "", "   ", "return a; // comment",
+          "/* a */ call();", "call(); /* a */", "x = 1; /* a */ y = 2;", "  }"};
+  private static final boolean[] JAVA_CODE = {true, false, false, false, false, true, true, true, true, true};
+  private static final String[] PYTHON_LINES = {"x = 1", "# comment", "", "print(x)  # comment", "def f():", "    return 2"};
+  private static final boolean[] PYTHON_CODE = {true, false, false, true, true, true};
+  private static final String[] C_LINES = {"int main() {", "// comment", "/* comment */", "printf(\"%d\", 3);", "}", ""};
+  private static final boolean[] C_CODE = {true, false, false, true, true, false};
+
+  private static byte[] bytes(String... lines) {
+    return (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  void followsMultiLineComments() {
+    var java = CommentClassifier.of(LanguageName.JAVA).codeLines(bytes("int main() {",
+            "// truc", "/* comm1 */", "printf(%d, 3); /* comm2 */", "int a, b, c; /*",
+            "comm3*/ printf(aa);", "/*", "a", "a", " */", "return 0; // truc", "/* aa */ function(); /* aa", "*/",
+            " /* aa */ function(); /* aa */ /* aa */ function(); /* ", "aa */ truc();", " /*",
+            "*/ int a;", "return 0;", "}"));
+    assertEquals(11, java.cardinality());
+    var javadoc = CommentClassifier.of(LanguageName.JAVA).codeLines(bytes("/**", " * Doc.", " */", "class A {}"));
+    assertEquals(1, javadoc.cardinality());
+    assertTrue(javadoc.get(3));
+    var python = CommentClassifier.of(LanguageName.PYTHON).codeLines(bytes("def f():", "    \"\"\"", "    Doc.", "    \"\"\"", "    return 1"));
+    assertEquals(2, python.cardinality());
+    var strings = CommentClassifier.of(LanguageName.C).codeLines(bytes("char *s = \"/*\";", "int a;"));
+    assertEquals(2, strings.cardinality());
+  }
+
+  @Test
+  void classifiesSingleLines() {
+    check(LanguageName.JAVA, JAVA_LINES, JAVA_CODE);
+    check(LanguageName.PYTHON, PYTHON_LINES, PYTHON_CODE);
+    check(LanguageName.C, C_LINES, C_CODE);
+  }
+
+  @Test
+  void countsTheCodeLinesOfALargeFile() {
+    var random = new Random(42);
+    var lines = new String[20_000];
+    var expected = 0;
+    for (var i = 0; i < lines.length; i++) {
+      var line = random.nextInt(JAVA_LINES.length);
+      lines[i] = JAVA_LINES[line];
+      if (JAVA_CODE[line]) {
+        expected++;
+      }
+    }
+    assertEquals(expected, CommentClassifier.of(LanguageName.JAVA).codeLines(bytes(lines)).cardinality());
+  }
+
+  private static void check(LanguageName language, String[] lines, boolean[] code) {
+    var codeLines = CommentClassifier.of(language).codeLines(bytes(lines));
+    for (var i = 0; i < lines.length; i++) {
+      assertEquals(code[i], codeLines.get(i), language + ": " + lines[i]);
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package fr.uge.gitclout.gitanalyze;
+
+import fr.uge.gitclout.database.Contribution;
+import fr.uge.gitclout.database.Repository;
+import fr.uge.gitclout.database.Tag;
+import fr.uge.gitclout.gitanalyse.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used to test that the contributions of an analysis are written as the intervals complete,
+ * with a bounded number of intervals waiting to be written.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public class ContributionStreamTest {
+
+  private static List<Contribution> interval(int size) {
+    var contributions = new ArrayList<Contribution>();
+    for (var i = 0; i < size; i++) {
+      contributions.add(new Contribution());
+    }
+    return contributions;
+  }
+
+  @Test
+  void writesEveryIntervalBeforeClosing() throws Exception {
+    var written = Collections.synchronizedList(new ArrayList<List<Contribution>>());
+    var stream = new ContributionStream(written::add, 2);
+    for (var i = 1; i <= 10; i++) {
+      stream.accept(interval(i));
+    }
+    stream.accept(List.of());
+    stream.close();
+    assertEquals(10, written.size());
+    assertEquals(55, stream.written());
+    stream.close();
+  }
+
+  @Test
+  void waitsForTheWriterWhenTheBufferIsFull() throws Exception {
+    var release = new CountDownLatch(1);
+    var stream = new ContributionStream(contributions -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }, 2);
+    var accepted = new CountDownLatch(4);
+    var producer = Thread.ofVirtual().start(() -> {
+      try {
+        for (var i = 0; i < 4; i++) {
+          stream.accept(interval(1));
+          accepted.countDown();
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    assertFalse(accepted.await(500, TimeUnit.MILLISECONDS));
+    assertEquals(1, accepted.getCount());
+    release.countDown();
+    producer.join();
+    stream.close();
+    assertEquals(4, stream.written());
+  }
+
+  @Test
+  void reportsTheFailureOfTheWriter() throws Exception {
+    var stream = new ContributionStream(contributions -> {
+      throw new IllegalStateException("database down");
+    }, 1);
+    stream.accept(interval(1));
+    var exception = assertThrows(IOException.class, () -> {
+      for (var i = 0; i < 100; i++) {
+        stream.accept(interval(1));
+      }
+    });
+    assertEquals("database down", exception.getCause().getMessage());
+    assertThrows(IOException.class, stream::close);
+  }
+
+  @Test
+  void handsEachIntervalToTheSink() throws Exception {
+    try (var local = LocalRepository.create(); var scheduler = new AnalysisScheduler(4, 4)) {
+      var tags = new ArrayList<Tag>();
+      for (var i = 0; i < 12; i++) {
+        local.write("File" + i + ".java", "class File" + i + " {}\n").commit(i % 2 == 0 ? "Alice" : "Bob", "commit " + i);
+        local.tag("v" + i);
+        tags.add(new Tag("v" + i));
+      }
+      var repo = new GitRepository(local.directory().toUri().toString());
+      var analyzer = new ContributionAnalyzer(null, local.git(), new GitAnalysisService(repo, local.git(), new GitCloneManager(repo)),
+              AnalysisOptions.of(scheduler.lane()));
+      var intervals = Collections.synchronizedList(new ArrayList<List<Contribution>>());
+      Method stream = ContributionAnalyzer.class.getDeclaredMethod("analyzeContributionsForTags", List.class, ContributionSink.class);
+      stream.setAccessible(true);
+      stream.invoke(analyzer, tags, (ContributionSink) intervals::add);
+      assertEquals(12, intervals.size());
+      for (var interval : intervals) {
+        assertEquals(1, interval.stream().map(contribution -> contribution.getTag().getName()).distinct().count());
+      }
+      Method collect = ContributionAnalyzer.class.getDeclaredMethod("analyzeContributionsForTags", List.class);
+      collect.setAccessible(true);
+      @SuppressWarnings("unchecked")
+      var contributions = (List<Contribution>) collect.invoke(analyzer, tags);
+      assertEquals(intervals.stream().mapToInt(List::size).sum(), contributions.size());
+      assertEquals(tags.stream().map(Tag::getName).toList(),
+              contributions.stream().map(contribution -> contribution.getTag().getName()).distinct().toList());
+      analyzer.close();
+    }
+  }
+
+  @Test
+  void streamsTheUpdateOfARepository() throws Exception {
+    try (var local = LocalRepository.create(); var scheduler = new AnalysisScheduler(2, 2)) {
+      var repo = new GitRepository(local.directory().toUri().toString());
+      for (var i = 1; i <= 2; i++) {
+        local.write("File" + i + ".java", "class File" + i + " {}\n").commit("Alice", "commit " + i);
+        local.tag("v" + i);
+      }
+      var repository = new Repository("local", repo.remoteRepoUri());
+      repository.setTags(new ArrayList<>(new GitAnalysisService(repo, local.git(), new GitCloneManager(repo)).ListTags()));
+      repository.setContributors(new HashSet<>());
+      for (var i = 3; i <= 4; i++) {
+        local.write("File" + i + ".java", "class File" + i + " {}\n").commit("Bob", "commit " + i);
+        local.tag("v" + i);
+      }
+      var gitAnalysisService = new GitAnalysisService(repo, local.git(), new GitCloneManager(repo));
+      var analyzer = new ContributionAnalyzer(null, local.git(), gitAnalysisService, AnalysisOptions.of(scheduler.lane()));
+      var saved = new ArrayList<String>();
+      var streamed = Collections.synchronizedSet(new HashSet<String>());
+      try (var gitAnalyze = new GitAnalyze(analyzer, gitAnalysisService, new TagManagementService(), new ContributorManagementService())) {
+        var update = gitAnalyze.updateRepository(repository,
+                result -> result.getRepository().getTags().forEach(tag -> saved.add(tag.getName())),
+                contributions -> {
+                  assertEquals(4, saved.size());
+                  contributions.forEach(contribution -> streamed.add(contribution.getTag().getName()));
+                });
+        assertTrue(update.isPresent());
+        assertTrue(update.get().getContributions().isEmpty());
+      }
+      assertEquals(List.of("v1", "v2", "v3", "v4"), saved);
+      assertEquals(Set.of("v3", "v4"), streamed);
+    }
+  }
+}
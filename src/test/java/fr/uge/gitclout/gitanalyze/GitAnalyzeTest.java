@@ -7,6 +7,7 @@ import fr.uge.gitclout.gitanalyse.*;
 import fr.uge.gitclout.gitcloutexeption.CloneRepositoryException;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
@@ -20,6 +21,7 @@ import java.util.Set;
 public class GitAnalyzeTest {
   
   private GitAnalyze gitAnalyze;
+  private final AnalysisScheduler scheduler = new AnalysisScheduler(2, 2);
   @BeforeAll
   void setUp() throws CloneRepositoryException {
     var repo = new GitRepository("https://github.com/SamueleGiraudo/Calimba");
@@ -27,12 +29,17 @@ public class GitAnalyzeTest {
     var path = gitCloneManager.createTempDirectory();
     Git git = gitCloneManager.cloneToDirectory(path);
     var gitAnalysisService = new GitAnalysisService(repo, git, gitCloneManager);
-    var contributionAnalyzer = new ContributionAnalyzer(null, git, gitAnalysisService);
+    var contributionAnalyzer = new ContributionAnalyzer(null, git, gitAnalysisService, AnalysisOptions.of(scheduler.lane()));
     gitAnalyze = new GitAnalyze(contributionAnalyzer, gitAnalysisService , new TagManagementService() , new ContributorManagementService());
     
     
   }
   
+  @AfterAll
+  void closeScheduler() {
+    scheduler.close();
+  }
+
   @Test
   void updateTest() throws GitAPIException, IOException {
     Repository repository = new Repository("Calimba" , "https://github.com/SamueleGiraudo/Calimba");
@@ -1,15 +1,23 @@
 package fr.uge.gitclout.gitanalyze;
 
 
+import fr.uge.gitclout.gitanalyse.FetchScope;
 import fr.uge.gitclout.gitanalyse.GitCloneManager;
 import fr.uge.gitclout.gitanalyse.GitRepository;
 import fr.uge.gitclout.gitcloutexeption.CloneRepositoryException;
 
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.util.FileUtils;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
 
-import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * This class is used to test the GitCloneManager class.
@@ -27,12 +35,43 @@ public class GitCloneManagerTest {
   }
   
   @Test
-  public void cloneToDirectoryTest() throws CloneRepositoryException {
+  public void cloneToDirectoryTest() throws CloneRepositoryException, IOException {
      var path =  gitCloneManager.createTempDirectory();
-    var git = gitCloneManager.cloneToDirectory(path);
-    assertNotEquals(null, git);
-    assert(path.toFile().exists());
-    
+    try (var git = gitCloneManager.cloneToDirectory(path)) {
+      assertNotEquals(null, git);
+      assert(path.toFile().exists());
+    } finally {
+      FileUtils.delete(path.toFile(), FileUtils.RECURSIVE | FileUtils.SKIP_MISSING);
+    }
   }
   
+  @Test
+  public void tagScopeTransfersOnlyTaggedObjects(@TempDir Path clones) throws IOException, GitAPIException {
+    try (var local = LocalRepository.create()) {
+      local.write("Main.java", "class Main {}\n").commit("Alice", "first");
+      local.tag("v1");
+      for (var i = 0; i < 20; i++) {
+        local.branch("feature-" + i).write("Feature" + i + ".java", "class Feature" + i + " {}\n".repeat(200)).commit("Bob", "feature " + i);
+        local.checkout("main");
+      }
+      var uri = local.directory().toUri().toString();
+      var allManager = new GitCloneManager(new GitRepository(uri, FetchScope.ALL));
+      var tagsManager = new GitCloneManager(new GitRepository(uri, FetchScope.TAGS));
+      try (var all = allManager.cloneToDirectory(clones.resolve("all"));
+           var tags = tagsManager.cloneToDirectory(clones.resolve("tags"))) {
+        assertEquals(1, tags.tagList().call().size());
+        assertTrue(tags.branchList().call().isEmpty());
+        assertEquals(21, all.branchList().call().size());
+        var allObjects = objectCount(all);
+        var tagObjects = objectCount(tags);
+        assertEquals(3, tagObjects);
+        assertTrue(tagObjects < allObjects, tagObjects + " objects with tags only, " + allObjects + " with a full clone");
+      }
+    }
+  }
+  
+  private static long objectCount(Git git) throws GitAPIException {
+    var statistics = git.gc().getStatistics();
+    return ((Number) statistics.get("numberOfPackedObjects")).longValue() + ((Number) statistics.get("numberOfLooseObjects")).longValue();
+  }
 }
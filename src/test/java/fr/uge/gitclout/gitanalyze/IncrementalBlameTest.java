@@ -0,0 +1,104 @@
+package fr.uge.gitclout.gitanalyze;
+
+import fr.uge.gitclout.database.Tag;
+import fr.uge.gitclout.gitanalyse.*;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used to test the incremental blame of the ContributionAnalyzer class on a local repository.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public class IncrementalBlameTest {
+
+  private static final AnalysisScheduler scheduler = new AnalysisScheduler(2, 2);
+
+  @AfterAll
+  static void closeScheduler() {
+    scheduler.close();
+  }
+
+  private static LocalRepository history() throws IOException, GitAPIException {
+    var local = LocalRepository.create();
+    local.write("src/Main.java", "class Main {\n  int a;\n}\n").commit("Alice", "first");
+    local.tag("v1");
+    local.write("src/Main.java", "class Main {\n  int a;\n  int b;\n  int c;\n}\n").commit("Bob", "fields");
+    local.write("src/Main.java", "final class Main {\n  int a;\n  int b;\n  int c;\n}\n").commit("Carol", "final");
+    local.write("tool.py", "# helper\nprint(1)\n").commit("Dave", "tool");
+    local.tag("v2");
+    local.write("src/Main.java", "final class Main {\n  int a;\n  int c;\n}\n").commit("Alice", "remove b");
+    local.write("tool.py", "# helper\nprint(1)\nprint(2)\n").commit("Bob", "tool");
+    local.tag("v3");
+    return local;
+  }
+
+  private static Map<String, Map<LanguageName, Integer>> analyze(ContributionAnalyzer analyzer, Tag... tags) throws Exception {
+    var contributions = tags.length == 1 ? Intervals.analyze(analyzer, tags[0]) : Intervals.analyze(analyzer, tags[0], tags[1]);
+    var result = new HashMap<String, Map<LanguageName, Integer>>();
+    for (var contribution : contributions) {
+      result.put(contribution.getContributor().getName(), contribution.getLanguageMap());
+    }
+    return result;
+  }
+
+  private static ContributionAnalyzer analyzer(LocalRepository local) {
+    return analyzer(local, null);
+  }
+
+  private static ContributionAnalyzer analyzer(LocalRepository local, BlameStore blameStore) {
+    var repo = new GitRepository(local.directory().toUri().toString());
+    var gitAnalysisService = new GitAnalysisService(repo, local.git(), new GitCloneManager(repo));
+    return new ContributionAnalyzer(null, local.git(), gitAnalysisService, AnalysisOptions.of(scheduler.lane()).withBlameStore(blameStore));
+  }
+
+  @Test
+  void countsOnlyTheLinesInsertedBetweenTags() throws Exception {
+    try (var local = history()) {
+      var analyzer = analyzer(local);
+      assertEquals(Map.of("Alice", Map.of(LanguageName.JAVA, 3)),
+              analyze(analyzer, new Tag("v1")));
+      assertEquals(Map.of("Bob", Map.of(LanguageName.JAVA, 2), "Carol", Map.of(LanguageName.JAVA, 1),
+                      "Dave", Map.of(LanguageName.PYTHON, 1)),
+              analyze(analyzer, new Tag("v1"), new Tag("v2")));
+      assertEquals(Map.of("Bob", Map.of(LanguageName.PYTHON, 1)),
+              analyze(analyzer, new Tag("v2"), new Tag("v3")));
+    }
+  }
+
+  @Test
+  void carriedOwnershipMatchesAFullBlame() throws Exception {
+    try (var local = history()) {
+      var incremental = analyzer(local);
+      analyze(incremental, new Tag("v1"));
+      analyze(incremental, new Tag("v1"), new Tag("v2"));
+      var carried = analyze(incremental, new Tag("v2"), new Tag("v3"));
+      var full = analyze(analyzer(local), new Tag("v2"), new Tag("v3"));
+      assertEquals(full, carried);
+    }
+  }
+
+  @Test
+  void reanalysisReadsTheBlameStore() throws Exception {
+    try (var local = history();
+         var blameStore = new BlameStore(Files.createTempDirectory("git_blames_").toString(), 1 << 20)) {
+      var first = analyzer(local, blameStore);
+      var expected = analyze(first, new Tag("v1"));
+      var expectedPair = analyze(first, new Tag("v1"), new Tag("v2"));
+      var misses = blameStore.missCount();
+      var second = analyzer(local, blameStore);
+      assertEquals(expected, analyze(second, new Tag("v1")));
+      assertEquals(expectedPair, analyze(second, new Tag("v1"), new Tag("v2")));
+      assertEquals(misses, blameStore.missCount());
+      assertTrue(blameStore.hitCount() > 0);
+    }
+  }
+}
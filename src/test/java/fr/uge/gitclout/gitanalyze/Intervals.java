@@ -0,0 +1,65 @@
+package fr.uge.gitclout.gitanalyze;
+
+import fr.uge.gitclout.database.Contribution;
+import fr.uge.gitclout.database.Tag;
+import fr.uge.gitclout.gitanalyse.ContributionAnalyzer;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * This class analyzes single intervals of a ContributionAnalyzer, through its private methods.
+ * The intervals share the incremental blame of the analyzer, like the intervals of the first run of an analysis,
+ * so that an interval reuses the blames of the interval analyzed before it.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+final class Intervals {
+
+  private static final Field INCREMENTAL_BLAME;
+  private static final Method NEW_INTERVAL;
+  private static final Method FOR_TAG;
+  private static final Method FOR_TAGS;
+
+  static {
+    try {
+      var incrementalBlame = Class.forName("fr.uge.gitclout.gitanalyse.IncrementalBlame");
+      var interval = Class.forName("fr.uge.gitclout.gitanalyse.ContributionAnalyzer$Interval");
+      INCREMENTAL_BLAME = ContributionAnalyzer.class.getDeclaredField("incrementalBlame");
+      NEW_INTERVAL = ContributionAnalyzer.class.getDeclaredMethod("newInterval", incrementalBlame);
+      FOR_TAG = ContributionAnalyzer.class.getDeclaredMethod("analyzeContributionForTag", Tag.class, interval);
+      FOR_TAGS = ContributionAnalyzer.class.getDeclaredMethod("analyzeContributionForTags", Tag.class, Tag.class, interval);
+      INCREMENTAL_BLAME.setAccessible(true);
+      for (var method : List.of(NEW_INTERVAL, FOR_TAG, FOR_TAGS)) {
+        method.setAccessible(true);
+      }
+    } catch (ReflectiveOperationException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private Intervals() {
+    throw new AssertionError();
+  }
+
+  private static Object newInterval(ContributionAnalyzer analyzer) throws ReflectiveOperationException {
+    return NEW_INTERVAL.invoke(analyzer, INCREMENTAL_BLAME.get(analyzer));
+  }
+
+  /**
+   * Analyzes the whole content of a tag.
+   */
+  @SuppressWarnings("unchecked")
+  static List<Contribution> analyze(ContributionAnalyzer analyzer, Tag tag) throws ReflectiveOperationException {
+    return (List<Contribution>) FOR_TAG.invoke(analyzer, tag, newInterval(analyzer));
+  }
+
+  /**
+   * Analyzes the interval between a tag and its base.
+   */
+  @SuppressWarnings("unchecked")
+  static List<Contribution> analyze(ContributionAnalyzer analyzer, Tag base, Tag tag) throws ReflectiveOperationException {
+    return (List<Contribution>) FOR_TAGS.invoke(analyzer, base, tag, newInterval(analyzer));
+  }
+}
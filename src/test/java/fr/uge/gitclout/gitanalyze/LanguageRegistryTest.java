@@ -0,0 +1,90 @@
+package fr.uge.gitclout.gitanalyze;
+
+import fr.uge.gitclout.database.Tag;
+import fr.uge.gitclout.gitanalyse.*;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used to test the recognition of the languages of the files by the LanguageRegistry class.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public class LanguageRegistryTest {
+
+  @Test
+  void recognizesNamesAndExtensions() {
+    var registry = new LanguageRegistry();
+    assertEquals(LanguageName.MAKEFILE, registry.byPath("Makefile"));
+    assertEquals(LanguageName.DOCKERFILE, registry.byPath("docker/Dockerfile"));
+    assertEquals(LanguageName.SHELL, registry.byPath("scripts/build.sh"));
+    assertEquals(LanguageName.JAVA, registry.byPath("src/Main.JAVA"));
+    assertEquals(LanguageName.C, registry.byPath("lib/list.hpp"));
+    assertNull(registry.byPath("bin/deploy"));
+  }
+
+  @Test
+  void recognizesShebangs() throws Exception {
+    try (var local = LocalRepository.create()) {
+      var registry = new LanguageRegistry();
+      try (var inserter = local.git().getRepository().newObjectInserter();
+           var reader = local.git().getRepository().newObjectReader()) {
+        var python = inserter.insert(Constants.OBJ_BLOB,
+                "#!/usr/bin/env python3.11\nprint(1)\n".getBytes(StandardCharsets.UTF_8));
+        var shell = inserter.insert(Constants.OBJ_BLOB,
+                "#!/bin/bash -e\necho 1\n".getBytes(StandardCharsets.UTF_8));
+        var text = inserter.insert(Constants.OBJ_BLOB,
+                "no shebang\n".getBytes(StandardCharsets.UTF_8));
+        inserter.flush();
+        assertEquals(LanguageName.PYTHON, registry.recognize("bin/tool", reader, python));
+        assertEquals(LanguageName.SHELL, registry.recognize("bin/deploy", reader, shell));
+        assertEquals(LanguageName.OTHER, registry.recognize("README", reader, text));
+        assertEquals(LanguageName.OTHER, registry.recognize("bin/gone", reader, ObjectId.zeroId()));
+      }
+    }
+  }
+
+  @Test
+  void readsRulesFromTheConfiguration() throws Exception {
+    var rules = Files.createTempFile("languages", ".properties");
+    try {
+      Files.writeString(rules, "SHELL.filenames=PKGBUILD\nRUBY.extensions=rb,rake\nJAVA.comment.single=#\n");
+      var registry = new LanguageRegistry(rules.toString());
+      assertEquals(LanguageName.SHELL, registry.byPath("PKGBUILD"));
+      assertEquals(LanguageName.RUBY, registry.byPath("tasks/db.rake"));
+      assertEquals(LanguageName.MAKEFILE, registry.byPath("Makefile"));
+      var lines = registry.classifier(LanguageName.JAVA).codeLines("# a\n// b\n".getBytes(StandardCharsets.UTF_8));
+      assertFalse(lines.get(0));
+      assertTrue(lines.get(1));
+      Files.writeString(rules, "SHELL.unknown=x\n");
+      assertThrows(IllegalArgumentException.class, () -> new LanguageRegistry(rules.toString()));
+    } finally {
+      Files.delete(rules);
+    }
+  }
+
+  @Test
+  void attributesScriptsWithoutExtension() throws Exception {
+    try (var local = LocalRepository.create(); var scheduler = new AnalysisScheduler(2, 2)) {
+      local.write("Makefile", "# build\nall:\n\tcc main.c\n")
+              .write("bin/run", "#!/usr/bin/env bash\n# run it\necho run\n")
+              .write("Dockerfile", "FROM alpine\n# comment\nRUN true\n")
+              .commit("Alice", "first");
+      local.tag("v1");
+      var repo = new GitRepository(local.directory().toUri().toString());
+      var analyzer = new ContributionAnalyzer(null, local.git(), new GitAnalysisService(repo, local.git(), new GitCloneManager(repo)),
+              AnalysisOptions.of(scheduler.lane()));
+      var contributions = Intervals.analyze(analyzer, new Tag("v1"));
+      assertEquals(1, contributions.size());
+      assertEquals(Map.of(LanguageName.MAKEFILE, 2, LanguageName.SHELL, 1, LanguageName.DOCKERFILE, 2),
+              contributions.get(0).getLanguageMap());
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package fr.uge.gitclout.gitanalyze;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+/**
+ * This class builds small git repositories on the local disk, so that tests do not need the network.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+final class LocalRepository implements AutoCloseable {
+
+  private final Path directory;
+  private final Git git;
+  private long time = 1_700_000_000L;
+
+  private LocalRepository(Path directory, Git git) {
+    this.directory = directory;
+    this.git = git;
+  }
+
+  static LocalRepository create() throws IOException, GitAPIException {
+    var directory = Files.createTempDirectory("git_local_");
+    return new LocalRepository(directory, Git.init().setDirectory(directory.toFile()).setInitialBranch("main").call());
+  }
+
+  Path directory() {
+    return directory;
+  }
+
+  Git git() {
+    return git;
+  }
+
+  LocalRepository write(String file, String content) throws IOException {
+    var path = directory.resolve(file);
+    Files.createDirectories(path.getParent());
+    Files.writeString(path, content);
+    return this;
+  }
+
+  LocalRepository delete(String file) throws IOException {
+    Files.delete(directory.resolve(file));
+    return this;
+  }
+
+  RevCommit commit(String author, String message) throws GitAPIException {
+    var ident = new PersonIdent(author, author.toLowerCase().replace(' ', '.') + "@example.com",
+            Instant.ofEpochSecond(time += 60), ZoneOffset.UTC);
+    git.add().addFilepattern(".").call();
+    git.add().addFilepattern(".").setUpdate(true).call();
+    return git.commit().setMessage(message).setAuthor(ident).setCommitter(ident).call();
+  }
+
+  LocalRepository tag(String name) throws GitAPIException {
+    git.tag().setName(name).setAnnotated(false).call();
+    return this;
+  }
+
+  LocalRepository branch(String name) throws GitAPIException {
+    git.checkout().setCreateBranch(true).setName(name).call();
+    return this;
+  }
+
+  LocalRepository checkout(String name) throws GitAPIException {
+    git.checkout().setName(name).call();
+    return this;
+  }
+
+  @Override
+  public void close() {
+    git.close();
+  }
+}
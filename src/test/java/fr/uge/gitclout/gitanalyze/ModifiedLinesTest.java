@@ -0,0 +1,69 @@
+package fr.uge.gitclout.gitanalyze;
+
+import fr.uge.gitclout.gitanalyse.ModifiedLines;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used to test the ModifiedLines class against the sets of line numbers it replaces.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public class ModifiedLinesTest {
+
+  @Test
+  void rangesMatchTheSetsOfLines() {
+    var random = new Random(7);
+    for (var round = 0; round < 100; round++) {
+      var edits = new EditList();
+      var inserted = new HashSet<Integer>();
+      var deleted = new HashSet<Integer>();
+      var a = 0;
+      var b = 0;
+      while (b < 500) {
+        a += random.nextInt(10);
+        b += random.nextInt(10);
+        var lengthA = random.nextInt(4);
+        var lengthB = random.nextInt(4);
+        var edit = new Edit(a, a + lengthA, b, b + lengthB);
+        edits.add(edit);
+        if (edit.getType() == Edit.Type.INSERT || edit.getType() == Edit.Type.REPLACE) {
+          for (var i = edit.getBeginB(); i < edit.getEndB(); i++) {
+            inserted.add(i);
+          }
+        }
+        if (edit.getType() == Edit.Type.DELETE) {
+          for (var i = edit.getBeginA(); i < edit.getEndA(); i++) {
+            deleted.add(i);
+          }
+        }
+        a += lengthA;
+        b += lengthB;
+      }
+      var insertedLines = ModifiedLines.inserted(edits);
+      var deletedLines = ModifiedLines.deleted(edits);
+      assertEquals(inserted.size(), insertedLines.count());
+      for (var line = 0; line < 520; line++) {
+        assertEquals(inserted.contains(line), insertedLines.contains(line));
+        assertEquals(deleted.contains(line), deletedLines.contains(line));
+      }
+      for (var i = 0; i < 200; i++) {
+        var line = random.nextInt(520);
+        assertEquals(inserted.contains(line), insertedLines.contains(line));
+      }
+    }
+  }
+
+  @Test
+  void emptyEditsModifyNothing() {
+    var lines = ModifiedLines.inserted(new EditList());
+    assertTrue(lines.isEmpty());
+    assertFalse(lines.contains(0));
+  }
+}
@@ -0,0 +1,108 @@
+package fr.uge.gitclout.gitanalyze;
+
+import fr.uge.gitclout.database.Tag;
+import fr.uge.gitclout.gitanalyse.*;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used to test the attribution of the lines of renamed files under each RenameDetection,
+ * and to compare the time each of them takes on a repository whose files are all moved.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public class RenameDetectionTest {
+
+  private static final AnalysisScheduler scheduler = new AnalysisScheduler(2, 2);
+
+  @AfterAll
+  static void closeScheduler() {
+    scheduler.close();
+  }
+
+  private static final int FILES = 150;
+  private static final int LINES = 40;
+
+  private static String content(int file, String firstLine) {
+    var builder = new StringBuilder(firstLine).append('\n');
+    for (var line = 1; line < LINES; line++) {
+      builder.append("int f").append(file).append('_').append(line).append(" = ").append(line).append(";\n");
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Alice writes the files, Bob moves all of them to another package, changing their first line.
+   */
+  private static LocalRepository repository() throws IOException, GitAPIException {
+    var local = LocalRepository.create();
+    for (var file = 0; file < FILES; file++) {
+      local.write("src/old/File" + file + ".java", content(file, "package old;"));
+    }
+    local.commit("Alice", "first");
+    local.tag("v1");
+    for (var file = 0; file < FILES; file++) {
+      local.delete("src/old/File" + file + ".java");
+      local.write("src/main/java/moved/File" + file + ".java", content(file, "package moved;"));
+    }
+    local.commit("Bob", "move");
+    local.tag("v2");
+    return local;
+  }
+
+  private static Map<String, Integer> analyze(LocalRepository local, AttributionMode attributionMode, RenameDetection renameDetection) throws Exception {
+    var repo = new GitRepository(local.directory().toUri().toString());
+    var analyzer = new ContributionAnalyzer(null, local.git(), new GitAnalysisService(repo, local.git(), new GitCloneManager(repo)),
+            AnalysisOptions.of(scheduler.lane()).withAttributionMode(attributionMode).withRenameDetection(renameDetection));
+    var result = new HashMap<String, Integer>();
+    for (var contribution : Intervals.analyze(analyzer, new Tag("v1"), new Tag("v2"))) {
+      var lines = contribution.getLanguageMap().getOrDefault(LanguageName.JAVA, 0);
+      if (lines > 0) {
+        result.put(contribution.getContributor().getName(), lines);
+      }
+    }
+    return result;
+  }
+
+  @Test
+  void creditsTheMoveOfAFileToItsChangedLinesOnly() throws Exception {
+    try (var local = repository()) {
+      var detected = new RenameDetection(true, 1000, 60, true);
+      assertEquals(Map.of("Bob", FILES), analyze(local, AttributionMode.BLAME, detected));
+      assertEquals(Map.of("Bob", FILES), analyze(local, AttributionMode.DIFF, detected));
+      var followedOnly = new RenameDetection(false, 1000, 60, true);
+      assertEquals(Map.of("Alice", FILES * (LINES - 1), "Bob", FILES), analyze(local, AttributionMode.BLAME, followedOnly));
+      var none = new RenameDetection(false, 1000, 60, false);
+      assertEquals(Map.of("Bob", FILES * LINES), analyze(local, AttributionMode.BLAME, none));
+      assertEquals(Map.of("Bob", FILES * LINES), analyze(local, AttributionMode.DIFF, none));
+    }
+  }
+
+  @Test
+  void detectsOnlyUnchangedRenamesAboveTheLimit() throws Exception {
+    try (var local = repository()) {
+      var overLimit = new RenameDetection(true, 10, 60, false);
+      assertEquals(Map.of("Bob", FILES * LINES), analyze(local, AttributionMode.BLAME, overLimit));
+      var strict = new RenameDetection(true, 1000, 99, false);
+      assertEquals(Map.of("Bob", FILES * LINES), analyze(local, AttributionMode.BLAME, strict));
+    }
+  }
+
+  @Test
+  void aBoundedDetectionAttributesLikeNoDetectionAboveItsLimit() throws Exception {
+    try (var local = repository()) {
+      for (var attributionMode : AttributionMode.values()) {
+        var bounded = analyze(local, attributionMode, new RenameDetection(true, 10, 60, true));
+        assertEquals(analyze(local, attributionMode, new RenameDetection(false, 1000, 60, false)), bounded);
+        assertNotEquals(analyze(local, attributionMode, new RenameDetection(true, 1000, 60, true)), bounded);
+      }
+    }
+  }
+}
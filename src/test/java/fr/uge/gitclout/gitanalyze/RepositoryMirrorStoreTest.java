@@ -0,0 +1,175 @@
+package fr.uge.gitclout.gitanalyze;
+
+import fr.uge.gitclout.gitanalyse.FetchScope;
+import fr.uge.gitclout.gitanalyse.GitRepository;
+import fr.uge.gitclout.gitanalyse.MirrorMaintenance;
+import fr.uge.gitclout.gitanalyse.RepositoryMirrorStore;
+import fr.uge.gitclout.gitcloutexeption.CloneRepositoryException;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used to test the RepositoryMirrorStore class.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public class RepositoryMirrorStoreTest {
+
+  @Test
+  void normalizedUriTest() {
+    var expected = new GitRepository("https://github.com/SamueleGiraudo/Calimba").normalizedUri();
+    assertEquals(expected, new GitRepository("https://GitHub.com/SamueleGiraudo/Calimba.git/").normalizedUri());
+    assertEquals(expected, new GitRepository(" https://github.com/SamueleGiraudo/Calimba// ").normalizedUri());
+    assertNotEquals(expected, new GitRepository("https://github.com/samuelegiraudo/calimba").normalizedUri());
+  }
+
+  @Test
+  void openClonesOnceThenFetches() throws IOException, GitAPIException {
+    try (var local = LocalRepository.create()) {
+      local.write("Main.java", "class Main {}\n").commit("Alice", "first");
+      local.tag("v1");
+      var store = new RepositoryMirrorStore(Files.createTempDirectory("git_mirrors_").toString(), Long.MAX_VALUE);
+      var repo = new GitRepository(local.directory().toUri().toString());
+      try (var lease = store.open(repo)) {
+        assertNotNull(lease);
+        assertEquals(1, lease.git().tagList().call().size());
+      }
+      var marker = Files.createFile(store.mirrorDirectory(repo).resolve("marker"));
+      local.write("Main.java", "class Main { int a; }\n").commit("Bob", "second");
+      local.tag("v2");
+      try (var lease = store.open(repo)) {
+        assertEquals(2, lease.git().tagList().call().size());
+        assertTrue(lease.git().getRepository().isBare());
+      }
+      assertTrue(Files.exists(marker));
+    }
+  }
+
+  @Test
+  void evictionSkipsLeasedMirrors() throws IOException, GitAPIException {
+    try (var first = LocalRepository.create(); var second = LocalRepository.create()) {
+      first.write("a.py", "print(1)\n").commit("Alice", "first");
+      second.write("b.py", "print(2)\n").commit("Bob", "second");
+      var store = new RepositoryMirrorStore(Files.createTempDirectory("git_mirrors_").toString(), 1);
+      var firstRepo = new GitRepository(first.directory().toUri().toString());
+      var secondRepo = new GitRepository(second.directory().toUri().toString());
+      store.open(firstRepo).close();
+      try (var lease = store.open(secondRepo)) {
+        assertEquals(2, store.mirrorCount());
+        assertEquals(1, store.leasedCount());
+        assertTrue(store.usedBytes() > 0);
+        store.evictLeastRecentlyUsed();
+        assertFalse(Files.exists(store.mirrorDirectory(firstRepo)));
+        assertTrue(Files.exists(store.mirrorDirectory(secondRepo)));
+        assertEquals(1, store.evictionCount());
+      }
+      store.evictLeastRecentlyUsed();
+      assertFalse(Files.exists(store.mirrorDirectory(secondRepo)));
+      assertEquals(0, store.usedBytes());
+    }
+  }
+
+  @Test
+  void inPlaceImportReadsTheLocalRepository() throws IOException, GitAPIException {
+    try (var local = LocalRepository.create()) {
+      local.write("Main.java", "class Main {}\n").commit("Alice", "first");
+      local.tag("v1");
+      var mirrors = Files.createTempDirectory("git_mirrors_");
+      var store = new RepositoryMirrorStore(mirrors.toString(), Long.MAX_VALUE, local.directory().getParent().toString());
+      try (var lease = store.open(new GitRepository(local.directory().toString(), FetchScope.IN_PLACE))) {
+        assertEquals(local.directory().resolve(".git").toRealPath(), lease.git().getRepository().getDirectory().toPath().toRealPath());
+        assertEquals(1, lease.git().tagList().call().size());
+      }
+      try (var files = Files.list(mirrors)) {
+        assertEquals(0, files.count());
+      }
+      var restricted = new RepositoryMirrorStore(mirrors.toString(), Long.MAX_VALUE);
+      assertThrows(CloneRepositoryException.class,
+              () -> restricted.open(new GitRepository(local.directory().toUri().toString(), FetchScope.IN_PLACE)));
+    }
+  }
+
+  @Test
+  void eachScopeHasItsOwnMirror() throws IOException, GitAPIException {
+    try (var local = LocalRepository.create()) {
+      local.write("Main.java", "class Main {}\n").commit("Alice", "first");
+      local.tag("v1");
+      local.branch("feature").write("Feature.java", "class Feature {}\n").commit("Bob", "feature");
+      var store = new RepositoryMirrorStore(Files.createTempDirectory("git_mirrors_").toString(), Long.MAX_VALUE);
+      var uri = local.directory().toUri().toString();
+      var all = new GitRepository(uri, FetchScope.ALL);
+      var tags = new GitRepository(uri, FetchScope.TAGS);
+      assertNotEquals(store.mirrorDirectory(all), store.mirrorDirectory(tags));
+      try (var lease = store.open(all)) {
+        assertEquals(2, lease.git().branchList().call().size());
+      }
+      try (var lease = store.open(tags)) {
+        assertTrue(lease.git().branchList().call().isEmpty());
+        assertEquals(1, lease.git().tagList().call().size());
+      }
+    }
+  }
+
+  @Test
+  void maintenanceWritesCommitGraphAndBitmaps() throws IOException, GitAPIException {
+    try (var local = LocalRepository.create()) {
+      for (var i = 0; i < 5; i++) {
+        local.write("Main.java", "class Main { int a" + i + "; }\n").commit("Alice", "commit " + i);
+      }
+      local.tag("v1");
+      var store = new RepositoryMirrorStore(Files.createTempDirectory("git_mirrors_").toString(), Long.MAX_VALUE, "", new MirrorMaintenance(true));
+      var repo = new GitRepository(local.directory().toUri().toString());
+      try (var lease = store.open(repo)) {
+        var commits = 0;
+        for (var commit : lease.git().log().all().call()) {
+          commits++;
+        }
+        assertEquals(5, commits);
+      }
+      var objects = store.mirrorDirectory(repo).resolve("objects");
+      assertTrue(Files.exists(objects.resolve("info").resolve("commit-graph")));
+      try (var packs = Files.list(objects.resolve("pack"))) {
+        assertTrue(packs.anyMatch(pack -> pack.getFileName().toString().endsWith(".bitmap")));
+      }
+    }
+  }
+
+  private static long countPacks(Path objects, String suffix) throws IOException {
+    try (var packs = Files.list(objects.resolve("pack"))) {
+      return packs.filter(pack -> pack.getFileName().toString().endsWith(suffix)).count();
+    }
+  }
+
+  @Test
+  void maintenanceOnlyRepacksAboveItsThresholds() throws IOException, GitAPIException {
+    try (var local = LocalRepository.create()) {
+      local.write("Main.java", "class Main {}\n").commit("Alice", "first");
+      var repo = new GitRepository(local.directory().toUri().toString());
+      var lazy = new RepositoryMirrorStore(Files.createTempDirectory("git_mirrors_").toString(), Long.MAX_VALUE, "", new MirrorMaintenance(true));
+      var eager = new RepositoryMirrorStore(Files.createTempDirectory("git_mirrors_").toString(), Long.MAX_VALUE, "", new MirrorMaintenance(true, 6700, 1));
+      for (var store : List.of(lazy, eager)) {
+        try (var lease = store.open(repo)) {
+          assertNotNull(lease);
+        }
+      }
+      local.write("Main.java", "class Main { int a; }\n").commit("Bob", "second");
+      for (var store : List.of(lazy, eager)) {
+        try (var lease = store.open(repo)) {
+          assertNotNull(lease);
+        }
+      }
+      var lazyObjects = lazy.mirrorDirectory(repo).resolve("objects");
+      assertEquals(2, countPacks(lazyObjects, ".pack"));
+      assertEquals(1, countPacks(lazyObjects, ".bitmap"));
+      var eagerObjects = eager.mirrorDirectory(repo).resolve("objects");
+      assertEquals(2, countPacks(eagerObjects, ".bitmap"));
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package fr.uge.gitclout.gitanalyze;
+
+import fr.uge.gitclout.database.Contribution;
+import fr.uge.gitclout.database.Tag;
+import fr.uge.gitclout.gitanalyse.*;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used to test the TagIndex class, to check the order and the bases of the tags,
+ * and to compare it with resolving the references of the tags on each lookup.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public class TagIndexTest {
+
+  @Test
+  void peelsEveryTagOnce() throws Exception {
+    try (var local = LocalRepository.create()) {
+      var first = local.write("a.txt", "a\n").commit("Alice", "first");
+      local.tag("v1");
+      var second = local.write("a.txt", "b\n").commit("Bob", "second");
+      var annotated = local.git().tag().setName("release/2.0").setAnnotated(true).setMessage("release").call();
+      local.git().tag().setName("tree").setObjectId(new RevWalk(local.git().getRepository()).parseCommit(second).getTree()).call();
+      var index = TagIndex.read(local.git().getRepository());
+      assertEquals(List.of("v1", "release/2.0"), index.entries().stream().map(TagIndex.Entry::name).toList());
+      assertNull(index.get("v1").base());
+      assertEquals("v1", index.get("release/2.0").base());
+      assertEquals(first.getId(), index.get("v1").commitId());
+      assertEquals(first.getId(), index.get("v1").tagId());
+      assertEquals(second.getId(), index.get("release/2.0").commitId());
+      assertEquals(annotated.getObjectId(), index.get("release/2.0").tagId());
+      assertEquals(second.getTree().getId(), index.get("release/2.0").treeId());
+      assertEquals(second.getCommitTime(), index.get("release/2.0").commitTime());
+      assertNull(index.get("tree"));
+
+      var repo = new GitRepository(local.directory().toUri().toString());
+      var gitAnalysisService = new GitAnalysisService(repo, local.git(), new GitCloneManager(repo));
+      var tags = gitAnalysisService.ListTags();
+      assertEquals(List.of("v1", "release/2.0"), tags.stream().map(Tag::getName).toList());
+      assertEquals(annotated.getObjectId().abbreviate(7).name(), tags.get(1).getSha1());
+      var resolve = resolve();
+      assertSame(resolve.invoke(gitAnalysisService, "release/2.0"), resolve.invoke(gitAnalysisService, "release/2.0"));
+      assertEquals(second.getId(), ((RevCommit) resolve.invoke(gitAnalysisService, "release/2.0")).getId());
+    }
+  }
+
+  private static LocalRepository maintainedRepository() throws Exception {
+    var local = LocalRepository.create();
+    var main = local.git().getRepository().getBranch();
+    local.write("Main.java", "class Main {}\n").commit("Alice", "first");
+    local.tag("v1.9");
+    local.branch("maintenance");
+    local.checkout(main);
+    local.write("Feature.java", "class Feature {}\nclass Other {}\n").commit("Bob", "feature");
+    local.tag("v1.10");
+    local.checkout("maintenance");
+    local.write("Fix.java", "class Fix {}\n").commit("Carol", "fix");
+    local.tag("v1.9.1");
+    local.checkout(main);
+    local.write("Main.java", "class Main {}\nclass Next {}\n").commit("Dave", "next");
+    local.tag("v1.11");
+    local.tag("v2");
+    return local;
+  }
+
+  @Test
+  void sortsTheTagsByHistory() throws Exception {
+    try (var local = maintainedRepository()) {
+      var index = TagIndex.read(local.git().getRepository());
+      assertEquals(List.of("v1.9", "v1.10", "v1.9.1", "v1.11", "v2"), index.entries().stream().map(TagIndex.Entry::name).toList());
+      assertNull(index.get("v1.9").base());
+      assertEquals("v1.9", index.get("v1.10").base());
+      assertEquals("v1.9", index.get("v1.9.1").base());
+      assertEquals("v1.10", index.get("v1.11").base());
+      assertEquals("v1.11", index.get("v2").base());
+      assertEquals("v1.10", index.baseAmong("v2", Set.of("v1.9", "v1.10", "v1.9.1")));
+      assertEquals("v1.9", index.baseAmong("v1.9.1", Set.of("v1.9", "v1.10")));
+      assertNull(index.baseAmong("v1.9.1", Set.of("v1.10", "v2")));
+      assertTrue(index.position("v1.9") < index.position("v1.10"));
+      assertEquals(Integer.MAX_VALUE, index.position("unknown"));
+    }
+  }
+
+  @Test
+  void diffsEachTagWithItsNearestTaggedAncestor() throws Exception {
+    try (var local = maintainedRepository(); var scheduler = new AnalysisScheduler(2, 2)) {
+      var repo = new GitRepository(local.directory().toUri().toString());
+      var analyzer = new ContributionAnalyzer(null, local.git(), new GitAnalysisService(repo, local.git(), new GitCloneManager(repo)),
+              AnalysisOptions.of(scheduler.lane()));
+      var method = ContributionAnalyzer.class.getDeclaredMethod("analyzeContributionsForTags", List.class);
+      method.setAccessible(true);
+      @SuppressWarnings("unchecked")
+      var contributions = (List<Contribution>) method.invoke(analyzer,
+              List.of(new Tag("v1.11"), new Tag("v1.9.1"), new Tag("v1.10"), new Tag("v1.9")));
+      var lines = new TreeMap<String, Integer>();
+      for (var contribution : contributions) {
+        var total = contribution.getLanguageMap().values().stream().mapToInt(Integer::intValue).sum();
+        lines.merge(contribution.getTag().getName() + " " + contribution.getContributor().getName(), total, Integer::sum);
+      }
+      assertEquals(Map.of("v1.9 Alice", 1, "v1.10 Bob", 2, "v1.9.1 Carol", 1, "v1.11 Dave", 1), lines);
+      assertEquals(List.of("v1.9", "v1.10", "v1.9.1", "v1.11"),
+              contributions.stream().map(contribution -> contribution.getTag().getName()).distinct().toList());
+      analyzer.close();
+    }
+  }
+
+  @Test
+  void agreesWithResolvingTheReferences() throws Exception {
+    try (var local = LocalRepository.create()) {
+      var tagCount = 20;
+      for (var i = 0; i < tagCount; i++) {
+        local.write("a.txt", i + "\n").commit("Alice", "commit " + i);
+        local.tag("v" + i);
+      }
+      var repository = local.git().getRepository();
+      var index = TagIndex.read(repository);
+      assertEquals(tagCount, index.size());
+      try (var revWalk = new RevWalk(repository)) {
+        for (var i = 0; i < tagCount; i++) {
+          var commit = revWalk.parseCommit(repository.findRef("v" + i).getObjectId());
+          assertEquals(commit.getId(), index.get("v" + i).commitId());
+          assertEquals(i, index.position("v" + i));
+        }
+      }
+    }
+  }
+
+  private static Method resolve() throws NoSuchMethodException {
+    var method = GitAnalysisService.class.getDeclaredMethod("resolveTagToCommit", String.class);
+    method.setAccessible(true);
+    return method;
+  }
+}
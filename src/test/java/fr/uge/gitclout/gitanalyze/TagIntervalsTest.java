@@ -0,0 +1,110 @@
+package fr.uge.gitclout.gitanalyze;
+
+import fr.uge.gitclout.api.ProgressWebSocket;
+import fr.uge.gitclout.database.Contribution;
+import fr.uge.gitclout.database.Tag;
+import fr.uge.gitclout.gitanalyse.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used to test the analysis of the tag intervals of the ContributionAnalyzer class, run concurrently.
+ * @author Tagnan Tremellat
+ * @version 1.0
+ */
+public class TagIntervalsTest {
+
+  private static final int TAGS = 20;
+
+  private static final class RecordingProgress extends ProgressWebSocket {
+    private final List<Integer> reports = new CopyOnWriteArrayList<>();
+
+    RecordingProgress() {
+      super(null);
+    }
+
+    @Override
+    public void updateProgress(int tagProgress, int totalTags) {
+      reports.add(tagProgress);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<String> analyze(LocalRepository local, List<Tag> tags, AnalysisScheduler scheduler, ProgressWebSocket progress) throws Exception {
+    var repo = new GitRepository(local.directory().toUri().toString());
+    var gitAnalysisService = new GitAnalysisService(repo, local.git(), new GitCloneManager(repo));
+    var analyzer = new ContributionAnalyzer(progress, local.git(), gitAnalysisService, AnalysisOptions.of(scheduler.lane()));
+    Method method = ContributionAnalyzer.class.getDeclaredMethod("analyzeContributionsForTags", List.class);
+    method.setAccessible(true);
+    var result = new ArrayList<String>();
+    for (var contribution : (List<Contribution>) method.invoke(analyzer, tags)) {
+      result.add(contribution.getTag().getName() + " " + contribution.getContributor().getName() + " " + contribution.getLanguageMap());
+    }
+    return result;
+  }
+
+  @Test
+  void concurrentRunsMatchTheSequentialAnalysis() throws Exception {
+    try (var local = LocalRepository.create();
+         var sequential = new AnalysisScheduler(4, 1);
+         var parallel = new AnalysisScheduler(8, 4)) {
+      var tags = new ArrayList<Tag>();
+      var content = new StringBuilder();
+      for (var i = 0; i < TAGS; i++) {
+        content.append("int field").append(i).append(";\n");
+        local.write("src/Main.java", "class Main {\n" + content + "}\n").commit(i % 3 == 0 ? "Alice" : "Bob", "field " + i);
+        local.write("tool" + i % 4 + ".py", "print(" + i + ")\n").commit("Carol", "tool " + i);
+        local.tag("v" + i);
+        tags.add(new Tag("v" + i));
+      }
+      var progress = new RecordingProgress();
+      var expected = analyze(local, tags, sequential, null);
+      assertEquals(expected, analyze(local, tags, parallel, progress));
+      var reports = new ArrayList<Integer>();
+      for (var i = 1; i <= TAGS; i++) {
+        reports.add(i);
+      }
+      assertEquals(reports, progress.reports);
+    }
+  }
+
+  @Test
+  void cancellingStopsBeforeTheNextInterval() throws Exception {
+    try (var local = LocalRepository.create();
+         var sequential = new AnalysisScheduler(4, 1)) {
+      var tags = new ArrayList<Tag>();
+      for (var i = 0; i < TAGS; i++) {
+        local.write("File" + i + ".java", "class File" + i + " {}\n").commit("Alice", "file " + i);
+        local.tag("v" + i);
+        tags.add(new Tag("v" + i));
+      }
+      var repo = new GitRepository(local.directory().toUri().toString());
+      var analyzerRef = new AtomicReference<ContributionAnalyzer>();
+      var reports = new CopyOnWriteArrayList<Integer>();
+      ProgressListener progress = (done, total) -> {
+        reports.add(done);
+        if (done == 3) {
+          analyzerRef.get().cancel();
+        }
+      };
+      var analyzer = new ContributionAnalyzer(progress, local.git(), new GitAnalysisService(repo, local.git(), new GitCloneManager(repo)),
+              AnalysisOptions.of(sequential.lane()));
+      analyzerRef.set(analyzer);
+      Method method = ContributionAnalyzer.class.getDeclaredMethod("analyzeContributionsForTags", List.class);
+      method.setAccessible(true);
+      var exception = assertThrows(InvocationTargetException.class, () -> method.invoke(analyzer, tags));
+      assertInstanceOf(InterruptedIOException.class, exception.getCause());
+      assertEquals(List.of(1, 2, 3), reports);
+      analyzer.close();
+    }
+  }
+}
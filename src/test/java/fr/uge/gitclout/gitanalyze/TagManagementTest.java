@@ -99,4 +99,15 @@ public class TagManagementTest {
     expected = List.of(new Tag("4", "4"));
     assertEquals(expected.size(), result.size());
   }
+
+  @Test
+  void testRestoreFullNames() throws InvocationTargetException, IllegalAccessException, NoSuchMethodException {
+    var tagManagementService = new TagManagementService();
+    Method method = TagManagementService.class.getDeclaredMethod("restoreFullNames", List.class, List.class);
+    method.setAccessible(true);
+    var oldTags = List.of(new Tag("2.0", "1"), new Tag("v1", "2"), new Tag("3.0", "3"));
+    var updateTags = List.of(new Tag("release/2.0", "1"), new Tag("v1", "2"), new Tag("hotfix/3.1", "3"));
+    method.invoke(tagManagementService, oldTags, updateTags);
+    assertEquals(List.of("release/2.0", "v1", "3.0"), oldTags.stream().map(Tag::getName).toList());
+  }
 }